@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.benchmarks;
+
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.HmacSHA256Verifier;
+import net.oauth.jsontoken.crypto.Signer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.MessageDigest;
+import java.security.SignatureException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of HMAC-SHA256 signing and verification with one signer and one
+ * verifier shared by all benchmark threads. The legacy* benchmarks use
+ * {@link SynchronizedHmacSHA256Signer}, the implementation before per-thread Macs.
+ *
+ * Run {@link #main} to measure at 1, 4, 16 and 64 threads, or pass -t to the
+ * JMH command line to pick a single thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HmacBenchmark {
+
+  private static final byte[] KEY = "kjdhasdkjhaskdjhaskdjhaskdjh".getBytes();
+  private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+
+  private byte[] source;
+  private byte[] signature;
+  private Signer signer;
+  private HmacSHA256Verifier verifier;
+  private Signer legacySigner;
+
+  @Setup
+  public void setUp() throws Exception {
+    source = ("eyJhbGciOiJIUzI1NiJ9.eyJpc3MiOiJleGFtcGxlLmNvbSIsImF1ZCI6ImV4YW1wbGUuY29tIiwi"
+        + "dXNlciI6eyJlbWFpbCI6InN0ZXZlQGdtYWlsLmNvbSJ9fQ").getBytes("US-ASCII");
+    signer = new HmacSHA256Signer("example.com", null, KEY);
+    verifier = new HmacSHA256Verifier(KEY);
+    legacySigner = new SynchronizedHmacSHA256Signer("example.com", null, KEY);
+    signature = signer.sign(source);
+  }
+
+  @Benchmark
+  public byte[] sign() throws SignatureException {
+    return signer.sign(source);
+  }
+
+  @Benchmark
+  public void verify() throws SignatureException {
+    verifier.verifySignature(source, signature);
+  }
+
+  @Benchmark
+  public byte[] legacySign() throws SignatureException {
+    return legacySigner.sign(source);
+  }
+
+  @Benchmark
+  public boolean legacyVerify() throws SignatureException {
+    return MessageDigest.isEqual(signature, legacySigner.sign(source));
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (int threads : THREAD_COUNTS) {
+      Options options = new OptionsBuilder()
+          .include(HmacBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
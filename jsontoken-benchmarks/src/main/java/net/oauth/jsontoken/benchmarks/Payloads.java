@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.benchmarks;
+
+import net.oauth.jsontoken.JsonTokenUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds benchmark claims shaped like the ones {@code JwtUtil.createToken} issues:
+ * aud and typ claims plus a nested "user" map, padded until the serialized payload
+ * reaches roughly the requested size.
+ */
+final class Payloads {
+
+  private Payloads() { }
+
+  /**
+   * Returns the dynamic claims (everything except iss, iat and exp) for a payload
+   * of about {@code payloadBytes} bytes of JSON.
+   */
+  static Map<String, Object> claims(int payloadBytes) {
+    Map<String, Object> user = new LinkedHashMap<String, Object>();
+    user.put("email", "steve@gmail.com");
+    user.put("userId", "steve");
+    Map<String, Object> claims = new LinkedHashMap<String, Object>();
+    claims.put("aud", "example.com");
+    claims.put("typ", "example.com/auth/v1");
+    claims.put("user", user);
+
+    int i = 0;
+    while (JsonTokenUtil.toJson(claims).length() < payloadBytes) {
+      if (i % 8 == 7) {
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("id", i);
+        nested.put("name", "group-" + i);
+        user.put("group" + i, nested);
+      } else {
+        user.put("attribute" + i, "value-" + i + "-abcdefghijklmnopqrstuvwxyz");
+      }
+      i++;
+    }
+    return claims;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.benchmarks;
+
+import net.oauth.jsontoken.crypto.AbstractSigner;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The HMAC-SHA256 signer as it was before it switched to per-thread {@link Mac}s:
+ * a single Mac, re-initialized on every call under the signer's monitor. Kept as
+ * the "before" baseline of {@link HmacBenchmark}.
+ */
+public class SynchronizedHmacSHA256Signer extends AbstractSigner {
+
+  private static final String HMAC_SHA256_ALG = "HmacSHA256";
+
+  private final Mac hmac;
+  private final SecretKey signingKey;
+
+  public SynchronizedHmacSHA256Signer(String issuer, String keyId, byte[] keyBytes)
+      throws InvalidKeyException, NoSuchAlgorithmException {
+    super(issuer, keyId);
+    this.signingKey = new SecretKeySpec(keyBytes, HMAC_SHA256_ALG);
+    this.hmac = Mac.getInstance(HMAC_SHA256_ALG);
+    hmac.init(signingKey);
+  }
+
+  @Override
+  public synchronized byte[] sign(byte[] source) {
+    try {
+      hmac.init(signingKey);
+    } catch (InvalidKeyException e) {
+      throw new IllegalStateException("key somehow became invalid since calling the constructor", e);
+    }
+    return hmac.doFinal(source);
+  }
+
+  @Override
+  public SignatureAlgorithm getSignatureAlgorithm() {
+    return SignatureAlgorithm.HS256;
+  }
+}
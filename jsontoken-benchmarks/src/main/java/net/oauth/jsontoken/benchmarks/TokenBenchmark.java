@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.benchmarks;
+
+import net.oauth.jsontoken.Checker;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.JsonTokenTemplate;
+import net.oauth.jsontoken.SystemClock;
+import net.oauth.jsontoken.crypto.EcdsaSHA256Signer;
+import net.oauth.jsontoken.crypto.EcdsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.Ed25519Signer;
+import net.oauth.jsontoken.crypto.Ed25519Verifier;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.HmacSHA256Verifier;
+import net.oauth.jsontoken.crypto.RsaSHA256Signer;
+import net.oauth.jsontoken.crypto.RsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Signer;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.VerifierProvider;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SignatureException;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the public token paths: {@link JsonToken#serializeAndSign()},
+ * {@link JsonTokenTemplate#issue(Instant, Instant, Map)},
+ * {@link JsonTokenParser#deserialize(String)},
+ * {@link JsonTokenParser#signatureIsValid(String, List)} and
+ * {@link JsonTokenParser#verifyAndDeserialize(String)}, for each signature algorithm
+ * and payload size. All threads share one signer and one parser. EdDSA needs a
+ * Java 15 or later runtime.
+ *
+ * Run {@link #main} to measure single-threaded and with one thread per core, with
+ * the gc profiler reporting allocation per operation. From the JMH command line,
+ * use -t to pick the thread count and -prof gc for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+  private static final byte[] HMAC_KEY = "kjdhasdkjhaskdjhaskdjhaskdjh".getBytes();
+
+  @Param({"HS256", "RS256", "ES256", "EdDSA"})
+  public String algorithm;
+
+  @Param({"256", "1024", "8192"})
+  public int payloadBytes;
+
+  private Signer signer;
+  private JsonTokenTemplate template;
+  private JsonTokenParser parser;
+  private List<Verifier> verifiers;
+  private Map<String, Object> claims;
+  private Map<String, Object> userClaim;
+  private String tokenString;
+
+  @Setup
+  public void setUp() throws Exception {
+    SignatureAlgorithm alg = SignatureAlgorithm.getFromJsonName(algorithm);
+    final Verifier verifier;
+    if (alg == SignatureAlgorithm.HS256) {
+      signer = new HmacSHA256Signer("example.com", null, HMAC_KEY);
+      verifier = new HmacSHA256Verifier(HMAC_KEY);
+    } else if (alg == SignatureAlgorithm.ES256) {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+      generator.initialize(new ECGenParameterSpec("secp256r1"));
+      KeyPair keyPair = generator.generateKeyPair();
+      signer = new EcdsaSHA256Signer("example.com", "key1", (ECPrivateKey) keyPair.getPrivate());
+      verifier = new EcdsaSHA256Verifier(keyPair.getPublic());
+    } else if (alg == SignatureAlgorithm.EdDSA) {
+      KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+      signer = new Ed25519Signer("example.com", "key1", keyPair.getPrivate());
+      verifier = new Ed25519Verifier(keyPair.getPublic());
+    } else {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(2048);
+      KeyPair keyPair = generator.generateKeyPair();
+      signer = new RsaSHA256Signer("example.com", "key1", (RSAPrivateKey) keyPair.getPrivate());
+      verifier = new RsaSHA256Verifier(keyPair.getPublic());
+    }
+    verifiers = Collections.singletonList(verifier);
+
+    VerifierProviders providers = new VerifierProviders();
+    providers.setVerifierProvider(alg, new VerifierProvider() {
+      @Override
+      public List<Verifier> findVerifier(String issuer, String keyId) {
+        return verifiers;
+      }
+    });
+    parser = new JsonTokenParser(new SystemClock(), providers, new Checker[0]);
+
+    claims = Payloads.claims(payloadBytes);
+    // the template holds aud and typ; only the user claim changes per token
+    Map<String, Object> staticClaims = new LinkedHashMap<String, Object>(claims);
+    userClaim = Collections.singletonMap("user", staticClaims.remove("user"));
+    template = new JsonTokenTemplate(signer, staticClaims);
+    tokenString = newToken().serializeAndSign();
+  }
+
+  private JsonToken newToken() {
+    JsonToken token = new JsonToken(signer);
+    token.getPayload().putAll(claims);
+    Instant now = Instant.now();
+    token.setIssuedAt(now);
+    token.setExpiration(now.plusSeconds(24 * 3600));
+    return token;
+  }
+
+  @Benchmark
+  public String serializeAndSign() throws SignatureException {
+    return newToken().serializeAndSign();
+  }
+
+  @Benchmark
+  public String issueFromTemplate() throws SignatureException {
+    Instant now = Instant.now();
+    return template.issue(now, now.plusSeconds(24 * 3600), userClaim);
+  }
+
+  @Benchmark
+  public JsonToken deserialize() throws Exception {
+    return parser.deserialize(tokenString);
+  }
+
+  @Benchmark
+  public boolean signatureIsValid() {
+    return parser.signatureIsValid(tokenString, verifiers);
+  }
+
+  @Benchmark
+  public JsonToken verifyAndDeserialize() throws Exception {
+    return parser.verifyAndDeserialize(tokenString);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+    for (int threads : threadCounts) {
+      Options options = new OptionsBuilder()
+          .include(TokenBenchmark.class.getSimpleName())
+          .threads(threads)
+          .addProfiler(GCProfiler.class)
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
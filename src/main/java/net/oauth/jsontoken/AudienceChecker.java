@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import java.net.URI;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that a token's audience is one of a set of accepted audiences. The aud
+ * claim may be a string or an array of strings, in which case one of them has to
+ * be accepted.
+ *
+ * The accepted audiences are normalized once, when the checker is created, and
+ * kept in a hash table that is probed with the token's audience as it is, so a
+ * check does not parse URIs or allocate, however many audiences are accepted.
+ */
+public class AudienceChecker implements Checker {
+
+  /**
+   * How a token's audience is compared with the accepted audiences.
+   */
+  public enum Match {
+    /** The whole audience has to be equal, ignoring case. */
+    EXACT,
+    /**
+     * Only the scheme and authority have to be equal, ignoring case; the path,
+     * query and fragment are ignored.
+     */
+    ORIGIN
+  }
+
+  private final Match match;
+  // open addressing, the table length is a power of two
+  private final String[] entries;
+  private final int[] hashes;
+
+  /**
+   * Creates a checker that accepts the given audiences exactly, ignoring case.
+   */
+  public AudienceChecker(String... audiences) {
+    this(Match.EXACT, Arrays.asList(audiences));
+  }
+
+  /**
+   * Public constructor.
+   * @param match how audiences are compared.
+   * @param audiences the accepted audiences. With {@link Match#ORIGIN} they have
+   *   to be absolute URIs.
+   * @throws IllegalArgumentException if an audience cannot be parsed as a URI
+   *   with {@link Match#ORIGIN}.
+   */
+  public AudienceChecker(Match match, Collection<String> audiences) {
+    this.match = JsonTokenUtil.checkNotNull(match);
+    if (audiences.isEmpty()) {
+      throw new IllegalArgumentException("no audiences to accept");
+    }
+    int capacity = Integer.highestOneBit(Math.max(2, audiences.size() * 2 - 1)) << 1;
+    entries = new String[capacity];
+    hashes = new int[capacity];
+    for (String audience : audiences) {
+      String entry = match == Match.ORIGIN ? origin(audience) : JsonTokenUtil.checkNotNull(audience);
+      int hash = hash(entry, entry.length());
+      int slot = find(entry, entry.length(), hash);
+      entries[slot] = entry;
+      hashes[slot] = hash;
+    }
+  }
+
+  @Override
+  public void check(Map<String, Object> payload) throws SignatureException {
+    checkAudience(payload.get(JsonToken.AUDIENCE));
+  }
+
+  @Override
+  public void check(JsonTokenClaims claims) throws SignatureException {
+    checkAudience(claims.getAudienceValue());
+  }
+
+  private void checkAudience(Object audience) throws SignatureException {
+    if (audience instanceof String) {
+      if (accepts((String) audience)) {
+        return;
+      }
+    } else if (audience instanceof List) {
+      List<?> audiences = (List<?>) audience;
+      for (int i = 0; i < audiences.size(); i++) {
+        Object element = audiences.get(i);
+        if (element instanceof String && accepts((String) element)) {
+          return;
+        }
+      }
+    } else if (audience == null) {
+      throw new SignatureException("token has no audience");
+    }
+    throw new SignatureException("Wrong audience: " + audience);
+  }
+
+  /**
+   * Returns true if the given audience is accepted.
+   */
+  public boolean accepts(String audience) {
+    int length = match == Match.ORIGIN ? originLength(audience) : audience.length();
+    if (length < 0) {
+      return false;
+    }
+    return entries[find(audience, length, hash(audience, length))] != null;
+  }
+
+  /**
+   * Returns the slot holding the first {@code length} chars of {@code key}, or the
+   * free slot where they would go.
+   */
+  private int find(String key, int length, int hash) {
+    int mask = entries.length - 1;
+    int slot = hash & mask;
+    while (entries[slot] != null) {
+      String entry = entries[slot];
+      if (hashes[slot] == hash && entry.length() == length
+          && entry.regionMatches(true, 0, key, 0, length)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  // a hash that is equal for strings that are equal ignoring case, like String.equalsIgnoreCase
+  private static int hash(String key, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the length of the "scheme://authority" prefix of the audience, or -1
+   * if it does not start with one.
+   */
+  private static int originLength(String audience) {
+    int colon = audience.indexOf(':');
+    if (colon <= 0 || !audience.startsWith("//", colon + 1)) {
+      return -1;
+    }
+    int end = colon + 3;
+    while (end < audience.length()) {
+      char c = audience.charAt(end);
+      if (c == '/' || c == '?' || c == '#') {
+        break;
+      }
+      end++;
+    }
+    return end == colon + 3 ? -1 : end;
+  }
+
+  private static String origin(String audience) {
+    URI uri = URI.create(audience);
+    if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+      throw new IllegalArgumentException("not an absolute URI with an authority: " + audience);
+    }
+    return uri.getScheme() + "://" + uri.getRawAuthority();
+  }
+}
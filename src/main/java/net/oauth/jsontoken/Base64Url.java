@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-light base64url decoding of token segments. Decodes a range of a
+ * String straight into a byte array so that the JSON parser can consume the
+ * bytes without going through intermediate Strings.
+ *
+ * Like commons-codec's {@code Base64.decodeBase64}, both the url-safe and the
+ * standard alphabet are accepted, characters outside the alphabet are skipped,
+ * and decoding stops at the first padding character.
+ */
+final class Base64Url {
+
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  private static final byte[] DECODE_TABLE = new byte[128];
+
+  private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[INITIAL_BUFFER_SIZE];
+    }
+  };
+
+  static {
+    Arrays.fill(DECODE_TABLE, (byte) -1);
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    for (int i = 0; i < alphabet.length(); i++) {
+      DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+    }
+    DECODE_TABLE['-'] = 62;
+    DECODE_TABLE['+'] = 62;
+    DECODE_TABLE['_'] = 63;
+    DECODE_TABLE['/'] = 63;
+  }
+
+  /**
+   * Returns a per-thread scratch buffer that can hold the decoded form of
+   * {@code encodedLength} characters. The buffer is reused by subsequent calls
+   * on the same thread, so its contents must be consumed before the next call.
+   */
+  static byte[] buffer(int encodedLength) {
+    int required = maxDecodedLength(encodedLength);
+    byte[] buffer = BUFFER.get();
+    if (buffer.length < required) {
+      buffer = new byte[Math.max(required, buffer.length * 2)];
+      BUFFER.set(buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * Decodes the characters of {@code source} between {@code from} (inclusive)
+   * and {@code to} (exclusive) into {@code dest}, starting at index 0.
+   *
+   * @return the number of bytes written to {@code dest}.
+   */
+  static int decode(String source, int from, int to, byte[] dest) {
+    int written = 0;
+    int bits = 0;
+    int accumulated = 0;
+    for (int i = from; i < to; i++) {
+      char c = source.charAt(i);
+      if (c == '=') {
+        break;
+      }
+      int value = c < 128 ? DECODE_TABLE[c] : -1;
+      if (value < 0) {
+        continue;
+      }
+      accumulated = (accumulated << 6) | value;
+      bits += 6;
+      if (bits >= 8) {
+        bits -= 8;
+        dest[written++] = (byte) (accumulated >> bits);
+      }
+    }
+    return written;
+  }
+
+  /**
+   * Decodes a range of {@code source} into a freshly allocated array of the
+   * exact decoded length.
+   */
+  static byte[] decodeToArray(String source, int from, int to) {
+    byte[] buffer = buffer(to - from);
+    return Arrays.copyOf(buffer, decode(source, from, to, buffer));
+  }
+
+  /**
+   * Returns the US-ASCII bytes of the first {@code length} characters of
+   * {@code source}. Characters outside US-ASCII are replaced by '?', as
+   * {@code StringUtils.getBytesUsAscii} does.
+   */
+  static byte[] asciiBytes(String source, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      char c = source.charAt(i);
+      bytes[i] = c < 128 ? (byte) c : (byte) '?';
+    }
+    return bytes;
+  }
+
+  private static int maxDecodedLength(int encodedLength) {
+    return (encodedLength / 4) * 3 + 3;
+  }
+
+  private Base64Url() { }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.Signer;
+
+import java.security.SignatureException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Signs many tokens with one {@link Signer}, spreading the work over an
+ * {@link Executor}. Each token is the one a {@link JsonToken} created with the
+ * same signer and clock would produce after its payload is given the claims.
+ *
+ * The signers in this library keep one signature engine per thread, so a single
+ * signer is shared by all tasks. Tokens are returned in the order of the claims;
+ * the iterator and stream forms keep at most {@code maxChunksInFlight} chunks
+ * signed or being signed ahead of the caller, so the whole batch is never held
+ * in memory at once.
+ */
+public class BatchJsonTokenIssuer {
+
+  public static final int DEFAULT_CHUNK_SIZE = 64;
+  public static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = 16;
+
+  private final Signer signer;
+  private final Clock clock;
+  private final Executor executor;
+  private final int chunkSize;
+  private final int maxChunksInFlight;
+
+  /**
+   * Creates a batch issuer that runs on the common {@link ForkJoinPool}.
+   * @param signer the signer that signs every token.
+   */
+  public BatchJsonTokenIssuer(Signer signer) {
+    this(signer, new SystemClock(), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Public constructor.
+   * @param signer the signer that signs every token.
+   * @param clock the clock passed to every {@link JsonToken}.
+   * @param executor runs serialization and signing.
+   */
+  public BatchJsonTokenIssuer(Signer signer, Clock clock, Executor executor) {
+    this(signer, clock, executor, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+  }
+
+  /**
+   * Public constructor.
+   * @param signer the signer that signs every token.
+   * @param clock the clock passed to every {@link JsonToken}.
+   * @param executor runs serialization and signing.
+   * @param chunkSize how many tokens a single task submitted to the executor signs.
+   * @param maxChunksInFlight how many chunks the iterator and stream forms sign
+   *   ahead of the caller.
+   */
+  public BatchJsonTokenIssuer(Signer signer, Clock clock, Executor executor, int chunkSize,
+      int maxChunksInFlight) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    if (maxChunksInFlight <= 0) {
+      throw new IllegalArgumentException("maxChunksInFlight must be positive");
+    }
+    this.signer = JsonTokenUtil.checkNotNull(signer);
+    this.clock = JsonTokenUtil.checkNotNull(clock);
+    this.executor = JsonTokenUtil.checkNotNull(executor);
+    this.chunkSize = chunkSize;
+    this.maxChunksInFlight = maxChunksInFlight;
+  }
+
+  /**
+   * Signs one token per claim set and returns them in the same order.
+   * @throws SignatureException if any token can't be signed.
+   */
+  public List<String> issueAll(List<? extends Map<String, Object>> claims)
+      throws SignatureException {
+    List<CompletableFuture<String[]>> chunks = new ArrayList<CompletableFuture<String[]>>();
+    for (int from = 0; from < claims.size(); from += chunkSize) {
+      chunks.add(submit(claims.subList(from, Math.min(claims.size(), from + chunkSize))));
+    }
+    List<String> tokens = new ArrayList<String>(claims.size());
+    try {
+      for (CompletableFuture<String[]> chunk : chunks) {
+        tokens.addAll(Arrays.asList(chunk.join()));
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof SignatureException) {
+        throw (SignatureException) e.getCause();
+      }
+      throw e;
+    }
+    return tokens;
+  }
+
+  /**
+   * Signs tokens ahead of the returned iterator, reading claims from
+   * {@code claims} in the caller's thread as room frees up in the window.
+   * {@link Iterator#next()} throws an {@link IllegalStateException} caused by
+   * the {@link SignatureException} if a token can't be signed.
+   */
+  public Iterator<String> issueAll(Iterator<? extends Map<String, Object>> claims) {
+    return new IssueIterator(claims);
+  }
+
+  /**
+   * Signs a stream of claim sets lazily. The tokens are in the same order as the
+   * claims, and signing failures are thrown as by {@link #issueAll(Iterator)}.
+   */
+  public Stream<String> issueAll(Stream<? extends Map<String, Object>> claims) {
+    Iterator<String> tokens = issueAll(claims.iterator());
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(tokens, Spliterator.ORDERED | Spliterator.NONNULL),
+        false).onClose(claims::close);
+  }
+
+  private CompletableFuture<String[]> submit(final List<? extends Map<String, Object>> chunk) {
+    return CompletableFuture.supplyAsync(() -> {
+      String[] tokens = new String[chunk.size()];
+      for (int i = 0; i < tokens.length; i++) {
+        JsonToken token = new JsonToken(signer, clock);
+        token.getPayload().putAll(chunk.get(i));
+        try {
+          tokens[i] = token.serializeAndSign();
+        } catch (SignatureException e) {
+          throw new CompletionException(e);
+        }
+      }
+      return tokens;
+    }, executor);
+  }
+
+  private final class IssueIterator implements Iterator<String> {
+    private final Iterator<? extends Map<String, Object>> claims;
+    private final ArrayDeque<CompletableFuture<String[]>> window =
+        new ArrayDeque<CompletableFuture<String[]>>();
+    private String[] chunk = new String[0];
+    private int position;
+
+    IssueIterator(Iterator<? extends Map<String, Object>> claims) {
+      this.claims = claims;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (position < chunk.length) {
+        return true;
+      }
+      fill();
+      if (window.isEmpty()) {
+        return false;
+      }
+      try {
+        chunk = window.poll().join();
+      } catch (CompletionException e) {
+        throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+      }
+      position = 0;
+      // keep the executor busy while the caller consumes this chunk
+      fill();
+      return true;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return chunk[position++];
+    }
+
+    private void fill() {
+      while (window.size() < maxChunksInFlight && claims.hasNext()) {
+        List<Map<String, Object>> next = new ArrayList<Map<String, Object>>(chunkSize);
+        while (next.size() < chunkSize && claims.hasNext()) {
+          next.add(claims.next());
+        }
+        window.add(submit(next));
+      }
+    }
+  }
+}
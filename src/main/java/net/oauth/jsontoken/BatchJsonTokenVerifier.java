@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.VerificationResult.Reason;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.VerifierProvider;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Verifies many tokens at once with the keys, clock and checkers of a
+ * {@link JsonTokenParser}. Tokens are grouped by (alg, iss, kid) so that each
+ * {@link VerifierProvider} lookup happens once per group rather than once per
+ * token, and parsing and signature checks are spread over an {@link Executor}.
+ *
+ * Instead of throwing on the first bad token, every token gets a
+ * {@link VerificationResult}, in the order the tokens were given.
+ */
+public class BatchJsonTokenVerifier {
+
+  public static final int DEFAULT_CHUNK_SIZE = 64;
+  public static final int DEFAULT_BATCH_SIZE = 4096;
+
+  private final JsonTokenParser parser;
+  private final Executor executor;
+  private final int chunkSize;
+
+  /**
+   * Creates a batch verifier that runs on the common {@link ForkJoinPool}.
+   * @param parser the parser whose verifier providers, clock and checkers are used.
+   */
+  public BatchJsonTokenVerifier(JsonTokenParser parser) {
+    this(parser, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Public constructor.
+   * @param parser the parser whose verifier providers, clock and checkers are used.
+   * @param executor runs verifier lookups, parsing and signature checks.
+   */
+  public BatchJsonTokenVerifier(JsonTokenParser parser, Executor executor) {
+    this(parser, executor, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Public constructor.
+   * @param parser the parser whose verifier providers, clock and checkers are used.
+   * @param executor runs verifier lookups, parsing and signature checks.
+   * @param chunkSize how many tokens a single task submitted to the executor handles.
+   */
+  public BatchJsonTokenVerifier(JsonTokenParser parser, Executor executor, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    this.parser = JsonTokenUtil.checkNotNull(parser);
+    this.executor = JsonTokenUtil.checkNotNull(executor);
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Verifies all tokens and returns one result per token, in the same order.
+   */
+  public List<VerificationResult> verifyAll(Collection<String> tokenStrings) {
+    String[] tokens = tokenStrings.toArray(new String[tokenStrings.size()]);
+    return Arrays.asList(verifyBatch(tokens));
+  }
+
+  /**
+   * Verifies tokens as they are pulled from the returned iterator, reading
+   * {@code batchSize} tokens at a time from {@code tokenStrings}. Verifiers are
+   * looked up afresh for every batch, so a failed lookup only affects its own
+   * batch and rotated keys are picked up; use a caching {@link VerifierProvider}
+   * to avoid fetching keys for each batch.
+   */
+  public Iterator<VerificationResult> verifyAll(Iterator<String> tokenStrings, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    return new BatchIterator(tokenStrings, batchSize);
+  }
+
+  /**
+   * Verifies a stream of tokens lazily, {@link #DEFAULT_BATCH_SIZE} tokens at a
+   * time. The results are in the same order as the tokens.
+   */
+  public Stream<VerificationResult> verifyAll(Stream<String> tokenStrings) {
+    Iterator<VerificationResult> results = verifyAll(tokenStrings.iterator(), DEFAULT_BATCH_SIZE);
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL),
+        false).onClose(tokenStrings::close);
+  }
+
+  private VerificationResult[] verifyBatch(final String[] tokens) {
+    final VerificationResult[] results = new VerificationResult[tokens.length];
+    final JsonToken[] parsed = new JsonToken[tokens.length];
+    final GroupKey[] keys = new GroupKey[tokens.length];
+
+    List<CompletableFuture<Void>> tasks = new ArrayList<CompletableFuture<Void>>();
+    for (int from = 0; from < tokens.length; from += chunkSize) {
+      final int start = from;
+      final int end = Math.min(tokens.length, from + chunkSize);
+      tasks.add(CompletableFuture.runAsync(() -> {
+        for (int i = start; i < end; i++) {
+          parse(tokens[i], i, parsed, keys, results);
+        }
+      }, executor));
+    }
+    join(tasks);
+
+    Map<GroupKey, List<Integer>> groups = new LinkedHashMap<GroupKey, List<Integer>>();
+    for (int i = 0; i < tokens.length; i++) {
+      if (keys[i] != null) {
+        List<Integer> members = groups.get(keys[i]);
+        if (members == null) {
+          members = new ArrayList<Integer>();
+          groups.put(keys[i], members);
+        }
+        members.add(i);
+      }
+    }
+
+    tasks.clear();
+    for (final Map.Entry<GroupKey, List<Integer>> group : groups.entrySet()) {
+      tasks.add(CompletableFuture
+          .supplyAsync(() -> lookUp(group.getKey()), executor)
+          .thenCompose(lookup -> verifyGroup(lookup, group.getValue(), parsed, results)));
+    }
+    join(tasks);
+    return results;
+  }
+
+  private void parse(String tokenString, int index, JsonToken[] parsed, GroupKey[] keys,
+      VerificationResult[] results) {
+    JsonToken token;
+    try {
+      token = parser.deserialize(tokenString);
+    } catch (Exception e) {
+      results[index] = parser.reject(tokenString, Reason.BAD_FORMAT, e.getMessage());
+      return;
+    }
+    SignatureAlgorithm sigAlg;
+    try {
+      sigAlg = token.getSignatureAlgorithm();
+    } catch (IllegalArgumentException e) {
+      results[index] = parser.reject(tokenString, Reason.UNKNOWN_ALGORITHM,
+          "unknown algorithm: " + token.getHeader().get(JsonToken.ALGORITHM_HEADER));
+      return;
+    } catch (RuntimeException e) {
+      results[index] = parser.reject(tokenString, Reason.BAD_FORMAT, e.getMessage());
+      return;
+    }
+    Object issuer = token.getPayload().get(JsonToken.ISSUER);
+    parsed[index] = token;
+    keys[index] = new GroupKey(sigAlg,
+        issuer instanceof String ? (String) issuer : null,
+        token.getVerificationKeyId());
+  }
+
+  private Lookup lookUp(GroupKey key) {
+    VerifierProviders providers = parser.getVerifierProviders();
+    VerifierProvider provider = providers == null ? null : providers.getVerifierProvider(key.sigAlg);
+    if (provider == null) {
+      return new Lookup(null, Reason.UNKNOWN_ALGORITHM,
+          "no verifier provider for algorithm: " + key.sigAlg);
+    }
+    try {
+      List<Verifier> verifiers = provider.findVerifier(key.issuer, key.keyId);
+      if (verifiers == null || verifiers.isEmpty()) {
+        return new Lookup(null, Reason.NO_VERIFIER, "No valid verifier for issuer: " + key.issuer);
+      }
+      return new Lookup(verifiers, null, null);
+    } catch (RuntimeException e) {
+      return new Lookup(null, Reason.NO_VERIFIER, e.getMessage());
+    }
+  }
+
+  private CompletableFuture<Void> verifyGroup(final Lookup lookup, final List<Integer> members,
+      final JsonToken[] parsed, final VerificationResult[] results) {
+    if (lookup.verifiers == null) {
+      for (int index : members) {
+        results[index] = parser.reject(
+            parsed[index].getTokenString(), lookup.reason, lookup.message);
+      }
+      return CompletableFuture.completedFuture(null);
+    }
+    List<CompletableFuture<Void>> tasks = new ArrayList<CompletableFuture<Void>>();
+    for (int from = 0; from < members.size(); from += chunkSize) {
+      final List<Integer> chunk = members.subList(from, Math.min(members.size(), from + chunkSize));
+      tasks.add(CompletableFuture.runAsync(() -> {
+        for (int index : chunk) {
+          results[index] = parser.verifyToken(parsed[index], lookup.verifiers);
+        }
+      }, executor));
+    }
+    return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()]));
+  }
+
+  private static void join(List<CompletableFuture<Void>> tasks) {
+    CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).join();
+  }
+
+  /**
+   * Tokens with equal keys are verified with the same verifiers.
+   */
+  private static final class GroupKey {
+    final SignatureAlgorithm sigAlg;
+    final String issuer;
+    final String keyId;
+
+    GroupKey(SignatureAlgorithm sigAlg, String issuer, String keyId) {
+      this.sigAlg = sigAlg;
+      this.issuer = issuer;
+      this.keyId = keyId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof GroupKey)) {
+        return false;
+      }
+      GroupKey other = (GroupKey) o;
+      return sigAlg == other.sigAlg && JsonTokenUtil.equal(issuer, other.issuer)
+          && JsonTokenUtil.equal(keyId, other.keyId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(new Object[] {sigAlg, issuer, keyId});
+    }
+  }
+
+  /**
+   * The verifiers found for a group, or why none were found.
+   */
+  private static final class Lookup {
+    final List<Verifier> verifiers;
+    final Reason reason;
+    final String message;
+
+    Lookup(List<Verifier> verifiers, Reason reason, String message) {
+      this.verifiers = verifiers;
+      this.reason = reason;
+      this.message = message;
+    }
+  }
+
+  private final class BatchIterator implements Iterator<VerificationResult> {
+    private final Iterator<String> tokenStrings;
+    private final int batchSize;
+    private VerificationResult[] batch = new VerificationResult[0];
+    private int position;
+
+    BatchIterator(Iterator<String> tokenStrings, int batchSize) {
+      this.tokenStrings = tokenStrings;
+      this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (position < batch.length) {
+        return true;
+      }
+      if (!tokenStrings.hasNext()) {
+        return false;
+      }
+      List<String> tokens = new ArrayList<String>(batchSize);
+      while (tokens.size() < batchSize && tokenStrings.hasNext()) {
+        tokens.add(tokenStrings.next());
+      }
+      batch = verifyBatch(tokens.toArray(new String[tokens.size()]));
+      position = 0;
+      return true;
+    }
+
+    @Override
+    public VerificationResult next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return batch[position++];
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SystemClock} that reads a timestamp refreshed by a background ticker
+ * instead of asking the system for the time on every call. Token time checks
+ * through {@link #currentTimeMillis()} and
+ * {@link #isCurrentTimeInInterval(long, long)} then make no system calls and
+ * allocate nothing, at the price of the time being up to one resolution behind.
+ *
+ * The ticker is a daemon thread owned by the clock; {@link #close()} stops it.
+ * Share one instance between parsers rather than creating one per parser.
+ */
+public class CachedClock extends SystemClock implements AutoCloseable {
+
+  /** Refresh interval used by {@link #CachedClock()}. */
+  public static final long DEFAULT_RESOLUTION_IN_MILLIS = 1;
+
+  private final ScheduledExecutorService ticker;
+  private volatile long currentTimeMillis = System.currentTimeMillis();
+
+  /**
+   * Creates a clock that is refreshed every millisecond and accepts the default clock skew.
+   */
+  public CachedClock() {
+    this(DEFAULT_RESOLUTION_IN_MILLIS, DEFAULT_ACCEPTABLE_CLOCK_SKEW_IN_MIN);
+  }
+
+  /**
+   * Public constructor.
+   * @param resolutionInMillis how often the cached time is refreshed, e.g. 1 or 1000.
+   * @param acceptableClockSkewInMin see {@link SystemClock#SystemClock(int)}.
+   */
+  public CachedClock(long resolutionInMillis, int acceptableClockSkewInMin) {
+    super(acceptableClockSkewInMin);
+    if (resolutionInMillis <= 0) {
+      throw new IllegalArgumentException("resolutionInMillis must be positive");
+    }
+    ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jsontoken-clock-ticker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ticker.scheduleAtFixedRate(() -> currentTimeMillis = System.currentTimeMillis(),
+        resolutionInMillis, resolutionInMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Instant now() {
+    return Instant.ofEpochMilli(currentTimeMillis);
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    if (getClass() != CachedClock.class) {
+      // a subclass may override now()
+      return now().toEpochMilli();
+    }
+    return currentTimeMillis;
+  }
+
+  @Override
+  public boolean isCurrentTimeInInterval(long startEpochSecond, long endEpochSecond) {
+    if (getClass() != CachedClock.class) {
+      // a subclass may override the Instant form
+      return super.isCurrentTimeInInterval(startEpochSecond, endEpochSecond);
+    }
+    return isInInterval(currentTimeMillis, startEpochSecond, endEpochSecond);
+  }
+
+  /**
+   * Stops the ticker. The clock keeps returning the last time it read.
+   */
+  @Override
+  public void close() {
+    ticker.shutdownNow();
+  }
+}
@@ -32,4 +32,17 @@ public interface Checker {
    */
   public void check(Map<String, Object> payload) throws SignatureException;
 
+  /**
+   * Checks that the given typed payload satisfies this token verifier. The default
+   * implementation converts the claims to a map, which only holds the claims the
+   * claims class has fields for, and calls {@link #check(Map)}. Checkers should
+   * override it to read the typed claims directly.
+   *
+   * @param claims the payload of a token, bound to a claims class
+   * @throws SignatureException if the audience doesn't match.
+   */
+  public default void check(JsonTokenClaims claims) throws SignatureException {
+    check(JsonTokenUtil.toMap(claims));
+  }
+
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Checker} built from declarative rules on the payload's claims, meant
+ * to replace a chain of single-purpose checkers. For example:
+ *
+ * <pre>
+ * Checker checker = ClaimsValidator.builder()
+ *     .oneOf("iss", Arrays.asList("https://a.example.com", "https://b.example.com"))
+ *     .contains("scope", "read")
+ *     .equalTo("user.tenant", "acme")
+ *     .range("ver", 2, 3)
+ *     .build();
+ * </pre>
+ *
+ * Paths name nested claims with dots. The rules are compiled into a tree with one
+ * node per path segment, so every claim is looked up once no matter how many rules
+ * it has, and the whole payload is validated in a single pass. All failed rules
+ * are reported together. Every rule other than {@link Builder#require(String)}
+ * also fails when the claim is missing.
+ */
+public final class ClaimsValidator implements Checker {
+
+  private final Node[] roots;
+
+  private ClaimsValidator(Node[] roots) {
+    this.roots = roots;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Validates the payload and returns a description of each failed rule, or an
+   * empty list if all rules passed.
+   */
+  public List<String> validate(Map<String, Object> payload) {
+    List<String> failures = validate(payload, roots, null);
+    return failures == null ? Collections.<String>emptyList() : failures;
+  }
+
+  /**
+   * @throws SignatureException listing every failed rule, if any failed.
+   */
+  @Override
+  public void check(Map<String, Object> payload) throws SignatureException {
+    List<String> failures = validate(payload, roots, null);
+    if (failures != null) {
+      throw new SignatureException("Invalid claims: " + String.join("; ", failures));
+    }
+  }
+
+  // failures is only allocated once something fails
+  private static List<String> validate(Map<?, ?> claims, Node[] nodes, List<String> failures) {
+    for (Node node : nodes) {
+      Object value = claims.get(node.name);
+      if (value == null) {
+        failures = fail(failures, node.path, "is missing");
+        continue;
+      }
+      for (Rule rule : node.rules) {
+        if (!rule.test(value)) {
+          failures = fail(failures, node.path, rule.description);
+        }
+      }
+      if (node.children.length > 0) {
+        if (value instanceof Map) {
+          failures = validate((Map<?, ?>) value, node.children, failures);
+        } else {
+          failures = fail(failures, node.path, "is not an object");
+        }
+      }
+    }
+    return failures;
+  }
+
+  private static List<String> fail(List<String> failures, String path, String description) {
+    if (failures == null) {
+      failures = new ArrayList<String>();
+    }
+    failures.add(path + " " + description);
+    return failures;
+  }
+
+  /**
+   * Numbers are compared by value, whatever type the JSON parser picked for them.
+   */
+  private static Object normalize(Object value) {
+    if (value instanceof Integer || value instanceof Long || value instanceof Short
+        || value instanceof Byte) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof Number) {
+      double number = ((Number) value).doubleValue();
+      return number == Math.rint(number) && Math.abs(number) < 0x1p63 ? (Object) (long) number : number;
+    }
+    return value;
+  }
+
+  private static final class Rule {
+    final Predicate<Object> predicate;
+    final String description;
+
+    Rule(Predicate<Object> predicate, String description) {
+      this.predicate = predicate;
+      this.description = description;
+    }
+
+    boolean test(Object value) {
+      return predicate.test(value);
+    }
+  }
+
+  private static final class Node {
+    final String name;
+    final String path;
+    final Rule[] rules;
+    final Node[] children;
+
+    Node(String name, String path, Rule[] rules, Node[] children) {
+      this.name = name;
+      this.path = path;
+      this.rules = rules;
+      this.children = children;
+    }
+  }
+
+  /**
+   * Collects rules; {@link #build()} compiles them into a {@link ClaimsValidator}.
+   */
+  public static final class Builder {
+
+    private final Map<String, Draft> roots = new LinkedHashMap<String, Draft>();
+
+    private Builder() {
+    }
+
+    /**
+     * The claim must be present.
+     */
+    public Builder require(String path) {
+      draft(path);
+      return this;
+    }
+
+    /**
+     * The claim must equal the given string or number.
+     */
+    public Builder equalTo(String path, Object expected) {
+      final Object normalized = normalize(JsonTokenUtil.checkNotNull(expected));
+      return rule(path, value -> normalized.equals(normalize(value)), "must be " + expected);
+    }
+
+    /**
+     * The claim must equal one of the given strings or numbers.
+     */
+    public Builder oneOf(String path, Collection<?> allowed) {
+      final Set<Object> normalized = new HashSet<Object>();
+      for (Object value : allowed) {
+        normalized.add(normalize(JsonTokenUtil.checkNotNull(value)));
+      }
+      return rule(path, value -> normalized.contains(normalize(value)), "must be one of " + allowed);
+    }
+
+    /**
+     * The claim must be a whole number between min and max, inclusive.
+     */
+    public Builder range(String path, final long min, final long max) {
+      return rule(path, value -> {
+        Object normalized = normalize(value);
+        if (!(normalized instanceof Long)) {
+          return false;
+        }
+        long number = (Long) normalized;
+        return number >= min && number <= max;
+      }, "must be between " + min + " and " + max);
+    }
+
+    /**
+     * The claim must be a string matching the regular expression in full.
+     */
+    public Builder matches(String path, String regex) {
+      final Pattern pattern = Pattern.compile(regex);
+      return rule(path, value -> value instanceof String && pattern.matcher((String) value).matches(),
+          "must match " + regex);
+    }
+
+    /**
+     * The claim must be an array containing the given string or number. A
+     * space-separated string, the usual form of scope, is treated as an array
+     * of its words.
+     */
+    public Builder contains(String path, Object element) {
+      final Object normalized = normalize(JsonTokenUtil.checkNotNull(element));
+      return rule(path, value -> {
+        if (value instanceof List) {
+          List<?> list = (List<?>) value;
+          for (int i = 0; i < list.size(); i++) {
+            if (normalized.equals(normalize(list.get(i)))) {
+              return true;
+            }
+          }
+          return false;
+        }
+        return value instanceof String && normalized instanceof String
+            && containsWord((String) value, (String) normalized);
+      }, "must contain " + element);
+    }
+
+    /**
+     * The claim must satisfy a custom predicate.
+     * @param description completes "{path} ..." in failure reports, e.g. "must be a UUID".
+     */
+    public Builder satisfies(String path, Predicate<Object> predicate, String description) {
+      return rule(path, JsonTokenUtil.checkNotNull(predicate), description);
+    }
+
+    public ClaimsValidator build() {
+      return new ClaimsValidator(compile(roots));
+    }
+
+    private Builder rule(String path, Predicate<Object> predicate, String description) {
+      draft(path).rules.add(new Rule(predicate, description));
+      return this;
+    }
+
+    private Draft draft(String path) {
+      List<String> names = Arrays.asList(JsonTokenUtil.checkNotNull(path).split("\\.", -1));
+      Map<String, Draft> level = roots;
+      Draft draft = null;
+      for (int i = 0; i < names.size(); i++) {
+        String name = names.get(i);
+        if (name.isEmpty()) {
+          throw new IllegalArgumentException("invalid claim path: " + path);
+        }
+        draft = level.get(name);
+        if (draft == null) {
+          draft = new Draft(String.join(".", names.subList(0, i + 1)));
+          level.put(name, draft);
+        }
+        level = draft.children;
+      }
+      return draft;
+    }
+
+    private static Node[] compile(Map<String, Draft> drafts) {
+      Node[] nodes = new Node[drafts.size()];
+      int i = 0;
+      for (Map.Entry<String, Draft> entry : drafts.entrySet()) {
+        Draft draft = entry.getValue();
+        nodes[i++] = new Node(entry.getKey(), draft.path,
+            draft.rules.toArray(new Rule[draft.rules.size()]), compile(draft.children));
+      }
+      return nodes;
+    }
+
+    private static boolean containsWord(String words, String word) {
+      if (word.isEmpty()) {
+        return false;
+      }
+      int from = 0;
+      while ((from = words.indexOf(word, from)) >= 0) {
+        int end = from + word.length();
+        if ((from == 0 || words.charAt(from - 1) == ' ')
+            && (end == words.length() || words.charAt(end) == ' ')) {
+          return true;
+        }
+        from = end;
+      }
+      return false;
+    }
+  }
+
+  private static final class Draft {
+    final String path;
+    final List<Rule> rules = new ArrayList<Rule>();
+    final Map<String, Draft> children = new LinkedHashMap<String, Draft>();
+
+    Draft(String path) {
+      this.path = path;
+    }
+  }
+}
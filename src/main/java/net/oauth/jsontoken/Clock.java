@@ -33,4 +33,24 @@ public interface Clock {
      * little bit to take into account possible clock skew.
      */
     public boolean isCurrentTimeInInterval(Instant start, Instant end);
+
+    /**
+     * Returns the current time in milliseconds since the epoch. The default
+     * implementation calls {@link #now()}; clocks on a hot path should override it
+     * so that reading the time does not allocate.
+     */
+    public default long currentTimeMillis() {
+        return now().toEpochMilli();
+    }
+
+    /**
+     * Same as {@link #isCurrentTimeInInterval(Instant, Instant)}, but with the
+     * interval given in seconds since the epoch, the unit of the iat and exp claims.
+     * The default implementation converts to {@link Instant}s; {@link SystemClock}
+     * compares the primitive values directly.
+     */
+    public default boolean isCurrentTimeInInterval(long startEpochSecond, long endEpochSecond) {
+        return isCurrentTimeInInterval(JsonTokenUtil.toInstant(startEpochSecond),
+                JsonTokenUtil.toInstant(endEpochSecond));
+    }
 }
@@ -16,14 +16,16 @@
  */
 package net.oauth.jsontoken;
 
-import net.oauth.jsontoken.crypto.AsciiStringSigner;
 import net.oauth.jsontoken.crypto.SignatureAlgorithm;
 import net.oauth.jsontoken.crypto.Signer;
-import org.apache.commons.codec.binary.Base64;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.SignatureException;
 import java.time.Instant;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -34,6 +36,11 @@ public class JsonToken {
     public final static String ALGORITHM_HEADER = "alg";
     public final static String KEY_ID_HEADER = "kid";
     public final static String TYPE_HEADER = "typ";
+    public final static String CERT_THUMBPRINT_HEADER = "x5t";
+    public final static String CERT_SHA256_THUMBPRINT_HEADER = "x5t#S256";
+    // headers that name the verification key, in order of preference
+    private final static String[] KEY_ID_HEADERS =
+            {KEY_ID_HEADER, CERT_THUMBPRINT_HEADER, CERT_SHA256_THUMBPRINT_HEADER};
 
     // standard claim names (payload parameters)
     public final static String ISSUER = "iss";
@@ -46,6 +53,25 @@ public class JsonToken {
 
     public final static int DEFAULT_LIFETIME_IN_MINS = 2;
 
+    /**
+     * Whether a class overrides {@link #computeSignatureBaseString()}, in which case
+     * the streaming signer has to go through it.
+     */
+    private final static ClassValue<Boolean> BASE_STRING_OVERRIDDEN = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != JsonToken.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("computeSignatureBaseString");
+                    return true;
+                } catch (NoSuchMethodException e) {
+                    // not declared here
+                }
+            }
+            return false;
+        }
+    };
+
 
     private Map<String, Object> header;
     private SignatureAlgorithm sigAlg;
@@ -56,7 +82,6 @@ public class JsonToken {
 
     // The following fields are only valid when signing the token.
     private final Signer signer;
-    private String signature;
     private String baseString;
 
 
@@ -82,7 +107,6 @@ public class JsonToken {
         this.signer = signer;
         this.clock = clock;
         this.sigAlg = signer.getSignatureAlgorithm();
-        this.signature = null;
         this.baseString = null;
         this.tokenString = null;
         String issuer = signer.getIssuer();
@@ -106,7 +130,6 @@ public class JsonToken {
         this.payload = payload;
         this.clock = clock;
         this.baseString = null;
-        this.signature = null;
         this.sigAlg = null;
         this.signer = null;
         this.header = header;
@@ -124,7 +147,6 @@ public class JsonToken {
         this.payload = payload;
         this.baseString = null;
         this.tokenString = null;
-        this.signature = null;
         this.sigAlg = null;
         this.signer = null;
         this.clock = null;
@@ -144,7 +166,6 @@ public class JsonToken {
         this.clock = clock;
         this.baseString = null;
         this.tokenString = null;
-        this.signature = null;
         this.sigAlg = null;
         this.signer = null;
     }
@@ -158,9 +179,69 @@ public class JsonToken {
      * @throws java.security.SignatureException if the token can't be signed.
      */
     public String serializeAndSign() throws SignatureException {
-        String baseString = computeSignatureBaseString();
-        String sig = getSignature();
-        return JsonTokenUtil.toDotFormat(baseString, sig);
+        TokenBuffer buffer = TokenBuffer.get();
+        try {
+            writeSignedToken(buffer);
+            return buffer.toAsciiString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Writes the serialized representation of this token, as returned by
+     * {@link #serializeAndSign()}, into a ByteBuffer as US-ASCII bytes.
+     *
+     * @param dest the buffer to write to, from its current position.
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if dest has too little room left, in
+     *   which case nothing is written.
+     * @throws java.security.SignatureException if the token can't be signed.
+     */
+    public int serializeAndSign(ByteBuffer dest) throws SignatureException {
+        TokenBuffer buffer = TokenBuffer.get();
+        try {
+            writeSignedToken(buffer);
+            buffer.writeTo(dest);
+            return buffer.size();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Writes the serialized representation of this token, as returned by
+     * {@link #serializeAndSign()}, to an OutputStream as US-ASCII bytes.
+     *
+     * @throws java.security.SignatureException if the token can't be signed.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void serializeAndSign(OutputStream out) throws SignatureException, IOException {
+        TokenBuffer buffer = TokenBuffer.get();
+        try {
+            writeSignedToken(buffer);
+            buffer.writeTo(out);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Appends the serialized representation of this token, as returned by
+     * {@link #serializeAndSign()}, to an Appendable such as a StringBuilder or Writer.
+     * Cast arguments that are also OutputStreams, like PrintStream, to pick an overload.
+     *
+     * @throws java.security.SignatureException if the token can't be signed.
+     * @throws IOException if appending fails.
+     */
+    public void serializeAndSign(Appendable out) throws SignatureException, IOException {
+        TokenBuffer buffer = TokenBuffer.get();
+        try {
+            writeSignedToken(buffer);
+            buffer.writeTo(out);
+        } finally {
+            buffer.release();
+        }
     }
 
     /**
@@ -201,8 +282,19 @@ public class JsonToken {
         setParam(JsonToken.EXPIRATION, instant.getEpochSecond());
     }
 
+    /**
+     * Returns the aud claim if it is a single audience, either a string or an
+     * array with one element, and null otherwise.
+     */
     public String getAudience() {
-        return getParamAsString(AUDIENCE);
+        return JsonTokenUtil.singleAudience(payload.get(AUDIENCE));
+    }
+
+    /**
+     * Returns all audiences of the aud claim, which may be a string or an array.
+     */
+    public List<String> getAudiences() {
+        return JsonTokenUtil.audiences(payload.get(AUDIENCE));
     }
 
     public void setAudience(String audience) {
@@ -252,10 +344,39 @@ public class JsonToken {
         return header;
     }
 
+    /**
+     * Returns the id of the key the token says it was signed with: the kid header,
+     * or failing that the certificate thumbprint in x5t or x5t#S256. Returns null
+     * if the header names no key, in which case every candidate key has to be tried.
+     */
+    public String getVerificationKeyId() {
+        Map<String, Object> header = getHeader();
+        for (String name : KEY_ID_HEADERS) {
+            Object value = header.get(name);
+            if (value instanceof String) {
+                return (String) value;
+            }
+        }
+        return null;
+    }
+
     public String getParamAsString(String param) {
         return (String)payload.get(param);
     }
 
+    /**
+     * Returns a time claim such as iat or exp in seconds since the epoch,
+     * {@link JsonTokenClaims#ABSENT} if the token does not have it, or
+     * {@link JsonTokenClaims#MALFORMED} if it is present but not a number.
+     */
+    long getEpochSecond(String param) {
+        Object value = payload.get(param);
+        if (value == null && !payload.containsKey(param)) {
+            return JsonTokenClaims.ABSENT;
+        }
+        return JsonTokenClaims.epochSecond(value);
+    }
+
     public Long getParamAsLong(String param) {
         Number number = (Number)payload.get(param);
         if(number == null) {
@@ -265,10 +386,18 @@ public class JsonToken {
         }
     }
 
+    /**
+     * Returns the header and payload in their signed form, computing and caching
+     * it on first use. Subclasses that override this are still honoured by every
+     * serializeAndSign overload, at the cost of building the base string as a
+     * String; to fill in claims before signing, override
+     * {@link #prepareForSigning()} instead.
+     */
     protected String computeSignatureBaseString() {
         if (baseString != null && !baseString.isEmpty()) {
             return baseString;
         }
+        prepareForSigning();
         baseString = JsonTokenUtil.toDotFormat(
                 JsonTokenUtil.toBase64(getHeader()),
                 JsonTokenUtil.toBase64(payload)
@@ -286,20 +415,41 @@ public class JsonToken {
         return header;
     }
 
-    private String getSignature() throws SignatureException {
-        if (signature != null && !signature.isEmpty()) {
-            return signature;
+    /**
+     * Called before the header and payload are serialized for signing, unless the
+     * signature base string has already been computed. Subclasses can override
+     * this to fill in default claims.
+     */
+    protected void prepareForSigning() {
+    }
+
+    /**
+     * Streams the header and payload JSON through a base64url encoder into the
+     * buffer, signs the buffered bytes in place and appends the encoded signature.
+     */
+    private void writeSignedToken(TokenBuffer buffer) throws SignatureException {
+        if (BASE_STRING_OVERRIDDEN.get(getClass())) {
+            buffer.writeAscii(computeSignatureBaseString());
+        } else if (baseString != null && !baseString.isEmpty()) {
+            buffer.writeAscii(baseString);
+        } else {
+            prepareForSigning();
+            try {
+                buffer.writeBase64UrlJson(JsonTokenUtil.mapper, getHeader());
+                buffer.write('.');
+                buffer.writeBase64UrlJson(JsonTokenUtil.mapper, payload);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("token can't be serialized to JSON", e);
+            }
         }
 
         if (signer == null) {
             throw new SignatureException("can't sign JsonToken with signer.");
         }
-        String signature;
         // now, generate the signature
-        AsciiStringSigner asciiSigner = new AsciiStringSigner(signer);
-        signature = Base64.encodeBase64URLSafeString(asciiSigner.sign(baseString));
-
-        return signature;
+        byte[] sig = signer.sign(buffer.array(), 0, buffer.size());
+        buffer.write('.');
+        buffer.writeBase64Url(sig, 0, sig.length);
     }
 
 }
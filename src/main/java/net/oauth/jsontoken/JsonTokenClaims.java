@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Base class for typed token payloads, bound straight from the token's JSON by
+ * {@link JsonTokenParser#verifyAndDeserialize(String, Class)} without going
+ * through a {@code Map}. Subclasses add fields for their own claims, using
+ * Jackson's {@link JsonProperty} where the claim name differs from the field name.
+ * Claims without a matching field are ignored.
+ *
+ * iat and exp are kept as primitive seconds since the epoch, with {@link #ABSENT}
+ * marking a claim the token does not have.
+ *
+ * Claims are bound to fields, of any visibility; getters are not treated as claims.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE,
+    isGetterVisibility = Visibility.NONE)
+public class JsonTokenClaims {
+
+  /** Value of {@link #getIssuedAt()} and {@link #getExpiration()} when the claim is missing. */
+  public static final long ABSENT = Long.MIN_VALUE;
+
+  // iat or exp that is present but not a number; such tokens are rejected
+  static final long MALFORMED = Long.MIN_VALUE + 1;
+
+  @JsonProperty(JsonToken.ISSUER)
+  private String issuer;
+
+  // a string or a list of strings
+  @JsonProperty(JsonToken.AUDIENCE)
+  private Object audience;
+
+  @JsonProperty(JsonToken.ISSUED_AT)
+  private long issuedAt = ABSENT;
+
+  @JsonProperty(JsonToken.EXPIRATION)
+  private long expiration = ABSENT;
+
+  // bind iat and exp through Object, so that strings and nulls aren't coerced into numbers
+  @JsonProperty(JsonToken.ISSUED_AT)
+  private void bindIssuedAt(Object value) {
+    issuedAt = epochSecond(value);
+  }
+
+  @JsonProperty(JsonToken.EXPIRATION)
+  private void bindExpiration(Object value) {
+    expiration = epochSecond(value);
+  }
+
+  /**
+   * Returns a present iat or exp claim value in seconds since the epoch, or
+   * {@link #MALFORMED} if it is not a number.
+   */
+  static long epochSecond(Object value) {
+    return value instanceof Number ? ((Number) value).longValue() : MALFORMED;
+  }
+
+  public String getIssuer() {
+    return issuer;
+  }
+
+  /**
+   * Returns the aud claim if it is a single audience, either a string or an
+   * array with one element, and null otherwise.
+   */
+  public String getAudience() {
+    return JsonTokenUtil.singleAudience(audience);
+  }
+
+  /**
+   * Returns all audiences of the aud claim, which may be a string or an array.
+   */
+  public List<String> getAudiences() {
+    return JsonTokenUtil.audiences(audience);
+  }
+
+  Object getAudienceValue() {
+    return audience;
+  }
+
+  /**
+   * Returns the iat claim in seconds since the epoch, or {@link #ABSENT}.
+   */
+  public long getIssuedAt() {
+    return issuedAt;
+  }
+
+  /**
+   * Returns the exp claim in seconds since the epoch, or {@link #ABSENT}.
+   */
+  public long getExpiration() {
+    return expiration;
+  }
+}
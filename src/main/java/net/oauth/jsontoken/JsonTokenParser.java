@@ -16,29 +16,43 @@
  */
 package net.oauth.jsontoken;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import net.oauth.jsontoken.crypto.AsciiStringVerifier;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import net.oauth.jsontoken.VerificationResult.Reason;
 import net.oauth.jsontoken.crypto.SignatureAlgorithm;
 import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.AsyncVerifierProvider;
+import net.oauth.jsontoken.discovery.VerifierProvider;
 import net.oauth.jsontoken.discovery.VerifierProviders;
-import org.apache.commons.codec.binary.Base64;
+import net.oauth.jsontoken.metrics.TokenMetrics;
+import net.oauth.jsontoken.metrics.TokenMetrics.Stage;
 import java.time.Instant;
 
+import java.io.IOException;
 import java.security.SignatureException;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Created by steve on 12/09/14.
  */
 public class JsonTokenParser {
+    private static final ConcurrentMap<Class<?>, ObjectReader> CLAIMS_READERS =
+            new ConcurrentHashMap<Class<?>, ObjectReader>();
+
     private final Clock clock;
     private final VerifierProviders verifierProviders;
     private final Checker[] checkers;
-    ObjectMapper mapper = new ObjectMapper();
+    private VerifiedTokenCache tokenCache;
+    // null when metrics are off, so that the clock is not read
+    private TokenMetrics metrics;
+    private final LongAdder fullScans = new LongAdder();
 
     /**
      * Creates a new {@link JsonTokenParser} with a default system clock. The default
@@ -67,6 +81,72 @@ public class JsonTokenParser {
         this.checkers = checkers;
     }
 
+    /**
+     * Sets a cache of already verified tokens that {@link #verifyAndDeserialize(String)}
+     * consults before deserializing and verifying a token. Should be called before
+     * the parser is shared between threads.
+     *
+     * A cache hit skips the signature check, so the cache must only hold tokens
+     * verified by this parser: a cache can't be set on more than one parser.
+     *
+     * @param tokenCache the cache to use, or null to disable caching.
+     * @throws IllegalStateException if the cache is already used by another parser.
+     */
+    public void setVerifiedTokenCache(VerifiedTokenCache tokenCache) {
+        if (tokenCache != null) {
+            tokenCache.bindTo(this);
+        }
+        this.tokenCache = tokenCache;
+    }
+
+    /**
+     * Returns the cache of verified tokens, or null if caching is disabled.
+     */
+    public VerifiedTokenCache getVerifiedTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * Sets the metrics that stage timings and rejections are reported to. Should
+     * be called before the parser is shared between threads.
+     *
+     * @param metrics the metrics to report to, or {@link TokenMetrics#NOOP}.
+     */
+    public void setMetrics(TokenMetrics metrics) {
+        this.metrics = JsonTokenUtil.checkNotNull(metrics) == TokenMetrics.NOOP ? null : metrics;
+    }
+
+    /**
+     * Returns the metrics that stage timings and rejections are reported to.
+     */
+    public TokenMetrics getMetrics() {
+        return metrics == null ? TokenMetrics.NOOP : metrics;
+    }
+
+    /**
+     * Returns how many signature checks had to try more than one verifier, because
+     * the token named no key or the verifier provider could not narrow the keys
+     * down by key id. A growing count means tokens pay for several signature
+     * verifications each.
+     */
+    public long getFullScanCount() {
+        return fullScans.sum();
+    }
+
+    /**
+     * Returns the verifier providers used to look up verification keys.
+     */
+    VerifierProviders getVerifierProviders() {
+        return verifierProviders;
+    }
+
+    /**
+     * Returns the clock that decides whether tokens are currently valid.
+     */
+    Clock getClock() {
+        return clock;
+    }
+
     /**
      * Decodes the JWT token string into a JsonToken object. Does not perform
      * any validation of headers or claims.
@@ -75,12 +155,11 @@ public class JsonTokenParser {
      * @return Unverified contents of the JWT as a JsonToken
      */
     public JsonToken deserialize(String tokenString) throws Exception {
-        String[] pieces = splitTokenString(tokenString);
-        String jwtHeaderSegment = pieces[0];
-        String jwtPayloadSegment = pieces[1];
-        byte[] signature = Base64.decodeBase64(pieces[2]);
-        Map<String, Object> header = mapper.readValue(JsonTokenUtil.fromBase64ToJsonString(jwtHeaderSegment),new TypeReference<LinkedHashMap<String,Object>>(){});
-        Map<String, Object> payload = mapper.readValue(JsonTokenUtil.fromBase64ToJsonString(jwtPayloadSegment),new TypeReference<LinkedHashMap<String,Object>>(){});
+        int headerEnd = tokenString.indexOf(JsonTokenUtil.DELIMITER);
+        int payloadEnd = tokenString.indexOf(JsonTokenUtil.DELIMITER, headerEnd + 1);
+        checkSegments(tokenString, headerEnd, payloadEnd);
+        Map<String, Object> header = readSegment(tokenString, 0, headerEnd);
+        Map<String, Object> payload = readSegment(tokenString, headerEnd + 1, payloadEnd);
         JsonToken jsonToken = new JsonToken(header, payload, clock, tokenString);
         return jsonToken;
     }
@@ -98,7 +177,9 @@ public class JsonTokenParser {
     }
 
     /**
-     * Parses, and verifies, a JSON Token.
+     * Parses, and verifies, a JSON Token. If a {@link VerifiedTokenCache} is set and
+     * already holds the token, its signature is not verified again, but the iat/exp
+     * and checker validation still runs.
      *
      * @param tokenString the serialized token that is to parsed and verified.
      * @return the deserialized {@link JsonToken}, suitable for passing to the constructor
@@ -106,11 +187,264 @@ public class JsonTokenParser {
      * @throws SignatureException
      */
     public JsonToken verifyAndDeserialize(String tokenString) throws Exception {
-        JsonToken jsonToken = deserialize(tokenString);
+        VerifiedTokenCache cache = tokenCache;
+        if (cache != null) {
+            JsonToken cached = cache.get(tokenString, clock.currentTimeMillis());
+            if (cached != null) {
+                checkClaims(cached);
+                return cached;
+            }
+        }
+        JsonToken jsonToken;
+        try {
+            jsonToken = deserialize(tokenString);
+        } catch (Exception e) {
+            recordRejection(Reason.BAD_FORMAT);
+            throw e;
+        }
         verify(jsonToken);
+        if (cache != null) {
+            cache.put(tokenString, jsonToken, clock.currentTimeMillis());
+        }
         return jsonToken;
     }
 
+    /**
+     * Parses and verifies a JSON Token like {@link #verifyAndDeserialize(String)},
+     * but binds the payload straight into a claims class instead of a map. The
+     * iat/exp validation and the checkers, through {@link Checker#check(JsonTokenClaims)},
+     * run against the typed claims. The {@link VerifiedTokenCache} is not used.
+     *
+     * @param tokenString the serialized token that is to parsed and verified.
+     * @param claimsType the class to bind the payload to.
+     * @return the verified claims.
+     * @throws SignatureException when the signature is invalid or a checker rejects the token
+     * @throws IllegalStateException when exp or iat are invalid
+     */
+    public <T extends JsonTokenClaims> T verifyAndDeserialize(String tokenString, Class<T> claimsType)
+            throws Exception {
+        int headerEnd = tokenString.indexOf(JsonTokenUtil.DELIMITER);
+        int payloadEnd = tokenString.indexOf(JsonTokenUtil.DELIMITER, headerEnd + 1);
+        Map<String, Object> header;
+        T claims;
+        try {
+            checkSegments(tokenString, headerEnd, payloadEnd);
+            header = readSegment(tokenString, 0, headerEnd);
+            claims = readSegment(tokenString, headerEnd + 1, payloadEnd, claimsReader(claimsType));
+        } catch (Exception e) {
+            recordRejection(Reason.BAD_FORMAT);
+            throw e;
+        }
+
+        // the header alone is enough to find the algorithm and key id
+        JsonToken headerOnly = new JsonToken(header, Collections.<String, Object>emptyMap(), clock, tokenString);
+        List<Verifier> verifiers = provideVerifiers(headerOnly, claims.getIssuer());
+        if (!signatureIsValid(tokenString, verifiers)) {
+            recordRejection(Reason.BAD_SIGNATURE);
+            throw new SignatureException("Invalid signature for token: " + tokenString);
+        }
+
+        long start = startTimer();
+        try {
+            if (!timeIsValid(claims.getIssuedAt(), claims.getExpiration())) {
+                recordRejection(Reason.INVALID_TIME);
+                throw new IllegalStateException(String.format(
+                        "Invalid iat and/or exp. iat: %s exp: %s now: %s",
+                        claims.getIssuedAt(), claims.getExpiration(), clock.now()));
+            }
+            if (checkers != null) {
+                for (Checker checker : checkers) {
+                    try {
+                        checker.check(claims);
+                    } catch (SignatureException | RuntimeException e) {
+                        recordRejection(reasonFor(checker));
+                        throw e;
+                    }
+                }
+            }
+            return claims;
+        } finally {
+            stopTimer(Stage.CLAIMS, start);
+        }
+    }
+
+    /**
+     * Parses and verifies a JSON Token like {@link #verifyAndDeserialize(String)},
+     * but reports a rejected token through the returned result instead of an
+     * exception. Bad signatures and invalid iat/exp are detected without
+     * constructing exceptions, which keeps a flood of forged or expired tokens
+     * cheap to reject.
+     *
+     * @param tokenString the serialized token that is to parsed and verified.
+     * @return the verified token, or the reason it was rejected.
+     */
+    public VerificationResult verifyToken(String tokenString) {
+        VerifiedTokenCache cache = tokenCache;
+        if (cache != null) {
+            JsonToken cached = cache.get(tokenString, clock.currentTimeMillis());
+            if (cached != null) {
+                return checkClaims(tokenString, cached);
+            }
+        }
+        JsonToken jsonToken;
+        SignatureAlgorithm sigAlg;
+        try {
+            jsonToken = deserialize(tokenString);
+        } catch (Exception e) {
+            return reject(tokenString, Reason.BAD_FORMAT, e.getMessage());
+        }
+        try {
+            sigAlg = jsonToken.getSignatureAlgorithm();
+        } catch (IllegalArgumentException e) {
+            return reject(tokenString, Reason.UNKNOWN_ALGORITHM,
+                    "unknown algorithm: " + jsonToken.getHeader().get(JsonToken.ALGORITHM_HEADER));
+        } catch (RuntimeException e) {
+            return reject(tokenString, Reason.BAD_FORMAT, e.getMessage());
+        }
+        VerifierProvider provider = verifierProviders == null
+                ? null : verifierProviders.getVerifierProvider(sigAlg);
+        if (provider == null) {
+            return reject(tokenString, Reason.UNKNOWN_ALGORITHM,
+                    "no verifier provider for algorithm: " + sigAlg);
+        }
+        List<Verifier> verifiers;
+        long start = startTimer();
+        try {
+            verifiers = provider.findVerifier(jsonToken.getIssuer(), jsonToken.getVerificationKeyId());
+        } catch (RuntimeException e) {
+            return reject(tokenString, Reason.NO_VERIFIER, e.getMessage());
+        } finally {
+            stopTimer(Stage.KEY_LOOKUP, start);
+        }
+        if (verifiers == null || verifiers.isEmpty()) {
+            return reject(tokenString, Reason.NO_VERIFIER,
+                    "No valid verifier for issuer: " + jsonToken.getIssuer());
+        }
+        VerificationResult result = verifyToken(jsonToken, verifiers);
+        if (cache != null && result.isValid()) {
+            cache.put(tokenString, jsonToken, clock.currentTimeMillis());
+        }
+        return result;
+    }
+
+    /**
+     * Checks the signature and claims of a deserialized token against the given
+     * verifiers, like {@link #verify(JsonToken, List)}, without throwing.
+     */
+    VerificationResult verifyToken(JsonToken jsonToken, List<Verifier> verifiers) {
+        String tokenString = jsonToken.getTokenString();
+        if (!signatureIsValid(tokenString, verifiers)) {
+            return reject(tokenString, Reason.BAD_SIGNATURE, "Invalid signature");
+        }
+        return checkClaims(tokenString, jsonToken);
+    }
+
+    private VerificationResult checkClaims(String tokenString, JsonToken jsonToken) {
+        long start = startTimer();
+        try {
+            if (!timeIsValid(jsonToken)) {
+                return reject(tokenString, Reason.INVALID_TIME, "Invalid iat and/or exp");
+            }
+            if (checkers != null) {
+                for (Checker checker : checkers) {
+                    try {
+                        checker.check(jsonToken.getPayload());
+                    } catch (SignatureException | RuntimeException e) {
+                        return reject(tokenString, reasonFor(checker), e.getMessage());
+                    }
+                }
+            }
+            return VerificationResult.success(tokenString, jsonToken);
+        } finally {
+            stopTimer(Stage.CLAIMS, start);
+        }
+    }
+
+    /**
+     * Records a rejection and returns the failed result for it.
+     */
+    VerificationResult reject(String tokenString, Reason reason, String message) {
+        recordRejection(reason);
+        return VerificationResult.failure(tokenString, reason, message);
+    }
+
+    /**
+     * Parses and verifies a JSON Token without blocking the calling thread on
+     * verification key lookups. Keys are looked up through
+     * {@link VerifierProviders#getAsyncVerifierProvider(SignatureAlgorithm)}; the
+     * token is parsed on the calling thread, and the signature and claims are checked
+     * once the keys are available. A {@link VerifiedTokenCache}, if set, is used
+     * like in {@link #verifyAndDeserialize(String)}.
+     *
+     * @param tokenString the serialized token that is to parsed and verified.
+     * @return a future of the verified token. It completes exceptionally with the
+     *   exception {@link #verifyAndDeserialize(String)} would have thrown.
+     */
+    public CompletableFuture<JsonToken> verifyAndDeserializeAsync(String tokenString) {
+        final VerifiedTokenCache cache = tokenCache;
+        final JsonToken jsonToken;
+        CompletableFuture<List<Verifier>> lookup;
+        try {
+            if (cache != null) {
+                JsonToken cached = cache.get(tokenString, clock.currentTimeMillis());
+                if (cached != null) {
+                    checkClaims(cached);
+                    return CompletableFuture.completedFuture(cached);
+                }
+            }
+            try {
+                jsonToken = deserialize(tokenString);
+            } catch (Exception e) {
+                recordRejection(Reason.BAD_FORMAT);
+                throw e;
+            }
+            JsonTokenUtil.checkNotNull(verifierProviders);
+            SignatureAlgorithm sigAlg;
+            try {
+                sigAlg = jsonToken.getSignatureAlgorithm();
+            } catch (RuntimeException e) {
+                recordRejection(e instanceof IllegalArgumentException ? Reason.UNKNOWN_ALGORITHM : Reason.BAD_FORMAT);
+                throw e;
+            }
+            AsyncVerifierProvider provider = verifierProviders.getAsyncVerifierProvider(sigAlg);
+            if (provider == null) {
+                recordRejection(Reason.UNKNOWN_ALGORITHM);
+                throw new IllegalStateException("No verifier provider for algorithm: " + sigAlg);
+            }
+            try {
+                lookup = provider.findVerifier(jsonToken.getIssuer(), jsonToken.getVerificationKeyId());
+            } catch (RuntimeException e) {
+                recordRejection(Reason.NO_VERIFIER);
+                throw e;
+            }
+        } catch (Exception e) {
+            CompletableFuture<JsonToken> failed = new CompletableFuture<JsonToken>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        // a failed lookup, such as a failed key fetch, is a rejection like a missing key
+        lookup = lookup.whenComplete((verifiers, e) -> {
+            if (e != null) {
+                recordRejection(Reason.NO_VERIFIER);
+            }
+        });
+        return lookup.thenApply(verifiers -> {
+            if (verifiers == null) {
+                recordRejection(Reason.NO_VERIFIER);
+                throw new IllegalStateException("No valid verifier for issuer: " + jsonToken.getIssuer());
+            }
+            try {
+                verify(jsonToken, verifiers);
+            } catch (SignatureException e) {
+                throw new CompletionException(e);
+            }
+            if (cache != null) {
+                cache.put(tokenString, jsonToken, clock.currentTimeMillis());
+            }
+            return jsonToken;
+        });
+    }
+
     /**
      * Verifies that the jsonToken has a valid signature and valid standard claims
      * (iat, exp). Does not need VerifierProviders because verifiers are passed in
@@ -122,34 +456,75 @@ public class JsonTokenParser {
      */
     public void verify(JsonToken jsonToken, List<Verifier> verifiers) throws SignatureException {
         if (! signatureIsValid(jsonToken.getTokenString(), verifiers)) {
+            recordRejection(Reason.BAD_SIGNATURE);
             throw new SignatureException("Invalid signature for token: " +
                     jsonToken.getTokenString());
         }
+        checkClaims(jsonToken);
+    }
 
-        Instant issuedAt = jsonToken.getIssuedAt();
-        Instant expiration = jsonToken.getExpiration();
+    /**
+     * Validates the iat/exp claims of a token whose signature has been verified,
+     * and runs the checkers against its payload.
+     *
+     * @throws SignatureException when a checker rejects the token
+     * @throws IllegalStateException when exp or iat are invalid
+     */
+    void checkClaims(JsonToken jsonToken) throws SignatureException {
+        long start = startTimer();
+        try {
+            if (!timeIsValid(jsonToken)) {
+                recordRejection(Reason.INVALID_TIME);
+                // the raw claims, which may not be numbers
+                throw new IllegalStateException(String.format(
+                        "Invalid iat and/or exp. iat: %s exp: %s now: %s",
+                        jsonToken.getPayload().get(JsonToken.ISSUED_AT),
+                        jsonToken.getPayload().get(JsonToken.EXPIRATION), clock.now()));
+            }
 
-        if (issuedAt == null && expiration != null) {
-            issuedAt = Instant.ofEpochMilli(0);
+            if (checkers != null) {
+                for (Checker checker : checkers) {
+                    try {
+                        checker.check(jsonToken.getPayload());
+                    } catch (SignatureException | RuntimeException e) {
+                        recordRejection(reasonFor(checker));
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            stopTimer(Stage.CLAIMS, start);
         }
+    }
 
-        if (issuedAt != null && expiration == null) {
-            expiration = Instant.ofEpochMilli(Long.MAX_VALUE);
-        }
+    /**
+     * Returns true if iat is not after exp and the current time lies between them.
+     * A missing iat counts as the beginning of time, a missing exp as the end of time.
+     */
+    private boolean timeIsValid(JsonToken jsonToken) {
+        return timeIsValid(jsonToken.getEpochSecond(JsonToken.ISSUED_AT),
+                jsonToken.getEpochSecond(JsonToken.EXPIRATION));
+    }
 
-        if (issuedAt != null && expiration != null) {
-            if (issuedAt.isAfter(expiration)
-                    || ! clock.isCurrentTimeInInterval(issuedAt, expiration)) {
-                throw new IllegalStateException(String.format("Invalid iat and/or exp. iat: %s exp: %s "
-                        + "now: %s", jsonToken.getIssuedAt(), jsonToken.getExpiration(), clock.now()));
-            }
+    /**
+     * Checks iat and exp, given in seconds since the epoch, against the clock.
+     * Either may be {@link JsonTokenClaims#ABSENT}; a {@link JsonTokenClaims#MALFORMED}
+     * claim is never valid.
+     */
+    private boolean timeIsValid(long issuedAt, long expiration) {
+        if (issuedAt == JsonTokenClaims.MALFORMED || expiration == JsonTokenClaims.MALFORMED) {
+            return false;
         }
-
-        if (checkers != null) {
-            for (Checker checker : checkers) {
-                checker.check(jsonToken.getPayload());
-            }
+        if (issuedAt == JsonTokenClaims.ABSENT && expiration == JsonTokenClaims.ABSENT) {
+            return true;
+        }
+        if (issuedAt == JsonTokenClaims.ABSENT) {
+            issuedAt = 0;
+        }
+        if (expiration == JsonTokenClaims.ABSENT) {
+            expiration = Long.MAX_VALUE;
         }
+        return issuedAt <= expiration && clock.isCurrentTimeInInterval(issuedAt, expiration);
     }
 
     /**
@@ -157,25 +532,34 @@ public class JsonTokenParser {
      *
      * @param tokenString the encoded and signed JSON Web Token to verify.
      * @param verifiers used to verify the signature. These usually encapsulate
-     *        secret keys.
+     *        secret keys. They are tried in order until one accepts the signature.
      */
     public boolean signatureIsValid(String tokenString, List<Verifier> verifiers) {
-        String[] pieces = splitTokenString(tokenString);
-        byte[] signature = Base64.decodeBase64(pieces[2]);
-        String baseString = JsonTokenUtil.toDotFormat(pieces[0], pieces[1]);
+        int headerEnd = tokenString.indexOf(JsonTokenUtil.DELIMITER);
+        int payloadEnd = tokenString.indexOf(JsonTokenUtil.DELIMITER, headerEnd + 1);
+        checkSegments(tokenString, headerEnd, payloadEnd);
+        long start = startTimer();
+        byte[] signature = Base64Url.decodeToArray(tokenString, payloadEnd + 1,
+                signatureEnd(tokenString, payloadEnd));
+        byte[] baseBytes = Base64Url.asciiBytes(tokenString, payloadEnd);
 
-        boolean sigVerified = false;
-        for (Verifier verifier : verifiers) {
-            AsciiStringVerifier asciiVerifier = new AsciiStringVerifier(verifier);
-            try {
-                asciiVerifier.verifySignature(baseString, signature);
-                sigVerified = true;
-                break;
-            } catch (SignatureException e) {
-                continue;
+        if (verifiers.size() > 1) {
+            fullScans.increment();
+            TokenMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordKeyScan();
             }
         }
-        return sigVerified;
+        try {
+            for (Verifier verifier : verifiers) {
+                if (verifier.verify(baseBytes, signature)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            stopTimer(Stage.SIGNATURE, start);
+        }
     }
 
     /**
@@ -209,36 +593,155 @@ public class JsonTokenParser {
     }
 
     /**
-     * Use VerifierProviders to get a list of verifiers for this token
+     * Use VerifierProviders to get a list of verifiers for this token. The
+     * provider is asked for the key named by the kid header, or by the x5t/x5t#S256
+     * certificate thumbprint if the token has no kid.
      *
      * @param jsonToken
      * @return list of verifiers
      * @throws SignatureException
      */
     private List<Verifier> provideVerifiers(JsonToken jsonToken) throws SignatureException {
+        return provideVerifiers(jsonToken, jsonToken.getIssuer());
+    }
+
+    private List<Verifier> provideVerifiers(JsonToken jsonToken, String issuer) {
         JsonTokenUtil.checkNotNull(verifierProviders);
-        Map<String, Object> header = jsonToken.getHeader();
-        String keyId = (String)header.get(JsonToken.KEY_ID_HEADER);
-        SignatureAlgorithm sigAlg = jsonToken.getSignatureAlgorithm();
-        List<Verifier> verifiers = verifierProviders.getVerifierProvider(sigAlg)
-                .findVerifier(jsonToken.getIssuer(), keyId);
+        SignatureAlgorithm sigAlg;
+        try {
+            sigAlg = jsonToken.getSignatureAlgorithm();
+        } catch (RuntimeException e) {
+            recordRejection(e instanceof IllegalArgumentException ? Reason.UNKNOWN_ALGORITHM : Reason.BAD_FORMAT);
+            throw e;
+        }
+        VerifierProvider provider = verifierProviders.getVerifierProvider(sigAlg);
+        if (provider == null) {
+            recordRejection(Reason.UNKNOWN_ALGORITHM);
+            throw new IllegalStateException("No verifier provider for algorithm: " + sigAlg);
+        }
+        long start = startTimer();
+        List<Verifier> verifiers;
+        try {
+            verifiers = provider.findVerifier(issuer, jsonToken.getVerificationKeyId());
+        } catch (RuntimeException e) {
+            recordRejection(Reason.NO_VERIFIER);
+            throw e;
+        } finally {
+            stopTimer(Stage.KEY_LOOKUP, start);
+        }
         if (verifiers == null) {
-            throw new IllegalStateException("No valid verifier for issuer: " + jsonToken.getIssuer());
+            recordRejection(Reason.NO_VERIFIER);
+            throw new IllegalStateException("No valid verifier for issuer: " + issuer);
         }
         return verifiers;
     }
 
+    private static Reason reasonFor(Checker checker) {
+        return checker instanceof AudienceChecker ? Reason.WRONG_AUDIENCE : Reason.CHECK_FAILED;
+    }
+
+    private void recordRejection(Reason reason) {
+        TokenMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordRejection(reason);
+        }
+    }
+
+    private long startTimer() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    private void stopTimer(Stage stage, long start) {
+        TokenMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
     /**
+     * Makes sure the token has exactly three segments, given the positions of
+     * its first two delimiters. Like the {@code String.split} based check this
+     * replaces, trailing empty segments are ignored, so an empty signature
+     * segment counts as a missing one and trailing delimiters are allowed.
+     *
      * @param tokenString The original encoded representation of a JWT
-     * @return Three components of the JWT as an array of strings
+     * @param headerEnd index of the first delimiter
+     * @param payloadEnd index of the second delimiter
      */
-    private String[] splitTokenString(String tokenString) {
-        String[] pieces = tokenString.split(Pattern.quote(JsonTokenUtil.DELIMITER));
-        if (pieces.length != 3) {
-            throw new IllegalStateException("Expected JWT to have 3 segments separated by '" +
-                    JsonTokenUtil.DELIMITER + "', but it has " + pieces.length + " segments");
+    private static void checkSegments(String tokenString, int headerEnd, int payloadEnd) {
+        if (headerEnd < 0 || payloadEnd < 0) {
+            throw segmentCountException(tokenString);
+        }
+        int signatureEnd = signatureEnd(tokenString, payloadEnd);
+        if (signatureEnd == payloadEnd + 1
+                || tokenString.lastIndexOf(JsonTokenUtil.DELIMITER, signatureEnd - 1) > payloadEnd) {
+            throw segmentCountException(tokenString);
+        }
+    }
+
+    /**
+     * Returns the end of the signature segment, which is the end of the token
+     * without any trailing delimiters.
+     */
+    private static int signatureEnd(String tokenString, int payloadEnd) {
+        int end = tokenString.length();
+        while (end > payloadEnd + 1 && tokenString.startsWith(JsonTokenUtil.DELIMITER, end - 1)) {
+            end--;
+        }
+        return end;
+    }
+
+    private static IllegalStateException segmentCountException(String tokenString) {
+        // count the segments String.split would return
+        int end = signatureEnd(tokenString, -1);
+        int segments = end == 0 && !tokenString.isEmpty() ? 0 : 1;
+        for (int i = tokenString.indexOf(JsonTokenUtil.DELIMITER); i >= 0 && i < end;
+             i = tokenString.indexOf(JsonTokenUtil.DELIMITER, i + 1)) {
+            segments++;
+        }
+        return new IllegalStateException("Expected JWT to have 3 segments separated by '" +
+                JsonTokenUtil.DELIMITER + "', but it has " + segments + " segments");
+    }
+
+    /**
+     * Decodes a base64url encoded JSON segment straight into a reusable byte
+     * buffer and parses the bytes, without building intermediate Strings.
+     */
+    private Map<String, Object> readSegment(String tokenString, int from, int to) throws IOException {
+        return readSegment(tokenString, from, to, JsonTokenUtil.MAP_READER);
+    }
+
+    private <T> T readSegment(String tokenString, int from, int to, ObjectReader reader)
+            throws IOException {
+        long start = startTimer();
+        byte[] buffer = Base64Url.buffer(to - from);
+        int length = Base64Url.decode(tokenString, from, to, buffer);
+        TokenMetrics metrics = this.metrics;
+        if (metrics != null) {
+            long decoded = System.nanoTime();
+            metrics.recordStage(Stage.DECODE, decoded - start);
+            start = decoded;
+        }
+        T value = reader.readValue(buffer, 0, length);
+        stopTimer(Stage.PARSE, start);
+        return value;
+    }
+
+    /**
+     * Returns the cached reader that binds payloads to a claims class. Claims the
+     * class has no field for are ignored.
+     */
+    private static ObjectReader claimsReader(Class<?> claimsType) {
+        ObjectReader reader = CLAIMS_READERS.get(claimsType);
+        if (reader == null) {
+            reader = JsonTokenUtil.mapper.reader(claimsType)
+                    .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+            ObjectReader existing = CLAIMS_READERS.putIfAbsent(claimsType, reader);
+            if (existing != null) {
+                reader = existing;
+            }
         }
-        return pieces;
+        return reader;
     }
 
 }
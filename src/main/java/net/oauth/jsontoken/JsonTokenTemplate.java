@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import net.oauth.jsontoken.crypto.Signer;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Issues many tokens that share a signer and a set of static claims, such as
+ * iss, aud or typ. The header segment and the JSON of the static claims are
+ * serialized once, when the template is built; issuing a token only serializes
+ * the claims that differ per token. The tokens are identical to those produced by
+ * a {@link JsonToken} with the same signer and the same claims in the same order.
+ *
+ * Templates are immutable and can be shared between threads if the signer can.
+ * The header is fixed when the template is built, so build a new template if the
+ * signer's key id changes.
+ */
+public final class JsonTokenTemplate {
+
+  private final Signer signer;
+  private final Map<String, Object> staticClaims;
+  private final String headerSegment;
+  // the static claims without the enclosing braces, e.g. "iss":"a","aud":"b"
+  private final byte[] staticClaimsJson;
+
+  /**
+   * Public constructor.
+   * @param signer the signer that signs every token.
+   * @param staticClaims claims that are the same in every token. The signer's issuer
+   *   is added as the first claim, as {@link JsonToken} does, unless it is null or
+   *   iss is already present.
+   */
+  public JsonTokenTemplate(Signer signer, Map<String, Object> staticClaims) {
+    this.signer = JsonTokenUtil.checkNotNull(signer);
+    Map<String, Object> claims = new LinkedHashMap<String, Object>();
+    if (signer.getIssuer() != null && !staticClaims.containsKey(JsonToken.ISSUER)) {
+      claims.put(JsonToken.ISSUER, signer.getIssuer());
+    }
+    claims.putAll(staticClaims);
+    this.staticClaims = Collections.unmodifiableMap(claims);
+
+    Map<String, Object> header = new LinkedHashMap<String, Object>();
+    header.put(JsonToken.ALGORITHM_HEADER, signer.getSignatureAlgorithm().getNameForJson());
+    if (signer.getKeyId() != null) {
+      header.put(JsonToken.KEY_ID_HEADER, signer.getKeyId());
+    }
+    this.headerSegment = JsonTokenUtil.toBase64(header);
+    byte[] json = toJson(claims);
+    this.staticClaimsJson = new byte[json.length - 2];
+    System.arraycopy(json, 1, staticClaimsJson, 0, staticClaimsJson.length);
+  }
+
+  /**
+   * Returns the base64url encoded header that starts every token.
+   */
+  public String getHeaderSegment() {
+    return headerSegment;
+  }
+
+  /**
+   * Returns the claims included in every token.
+   */
+  public Map<String, Object> getStaticClaims() {
+    return staticClaims;
+  }
+
+  /**
+   * Issues a signed token with the static claims followed by {@code claims}.
+   * @param claims the per-token claims; must not repeat a static claim.
+   * @return the serialized token.
+   * @throws SignatureException if the token can't be signed.
+   */
+  public String issue(Map<String, Object> claims) throws SignatureException {
+    return issue(null, null, claims);
+  }
+
+  /**
+   * Issues a signed token with the static claims followed by iat and exp, if not
+   * null, and then {@code claims}.
+   * @param issuedAt the iat claim, or null.
+   * @param expiration the exp claim, or null.
+   * @param claims the per-token claims; must not repeat a static claim, iat or exp.
+   * @return the serialized token.
+   * @throws SignatureException if the token can't be signed.
+   */
+  public String issue(Instant issuedAt, Instant expiration, Map<String, Object> claims)
+      throws SignatureException {
+    for (String name : claims.keySet()) {
+      if (staticClaims.containsKey(name)
+          || (issuedAt != null && JsonToken.ISSUED_AT.equals(name))
+          || (expiration != null && JsonToken.EXPIRATION.equals(name))) {
+        throw new IllegalArgumentException("claim " + name + " is already set");
+      }
+    }
+    // serialize first, so that a claim that can't be serialized leaves the buffer untouched
+    byte[] json = claims.isEmpty() ? null : toJson(claims);
+    TokenBuffer buffer = TokenBuffer.get();
+    try {
+      buffer.writeAscii(headerSegment);
+      buffer.write('.');
+      TokenBuffer.Base64UrlEncoder payload = buffer.base64UrlEncoder();
+      payload.write('{');
+      payload.write(staticClaimsJson, 0, staticClaimsJson.length);
+      boolean empty = staticClaimsJson.length == 0;
+      if (issuedAt != null) {
+        empty = writeNumber(payload, empty, JsonToken.ISSUED_AT, issuedAt.getEpochSecond());
+      }
+      if (expiration != null) {
+        empty = writeNumber(payload, empty, JsonToken.EXPIRATION, expiration.getEpochSecond());
+      }
+      if (json == null) {
+        payload.write('}');
+      } else {
+        if (!empty) {
+          payload.write(',');
+        }
+        // the per-token claims without their opening brace, but with the closing one
+        payload.write(json, 1, json.length - 1);
+      }
+      payload.finish();
+
+      byte[] signature = signer.sign(buffer.array(), 0, buffer.size());
+      buffer.write('.');
+      buffer.writeBase64Url(signature, 0, signature.length);
+      return buffer.toAsciiString();
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private static boolean writeNumber(TokenBuffer.Base64UrlEncoder out, boolean empty, String name,
+      long value) {
+    String member = (empty ? "\"" : ",\"") + name + "\":" + value;
+    for (int i = 0; i < member.length(); i++) {
+      out.write(member.charAt(i));
+    }
+    return false;
+  }
+
+  private static byte[] toJson(Map<String, Object> claims) {
+    try {
+      return JsonTokenUtil.mapper.writeValueAsBytes(claims);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("claims can't be serialized to JSON", e);
+    }
+  }
+}
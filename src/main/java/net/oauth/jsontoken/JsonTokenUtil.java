@@ -16,10 +16,17 @@
  */
 package net.oauth.jsontoken;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.StringUtils;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -28,6 +35,9 @@ import java.util.Map;
  */
 public class JsonTokenUtil {
   static ObjectMapper mapper = new ObjectMapper();
+  // ObjectReaders are immutable, so one instance serves every parser and thread
+  static final ObjectReader MAP_READER =
+      mapper.reader(new TypeReference<LinkedHashMap<String, Object>>() {});
   static public final String DELIMITER = ".";
 
   public static String toBase64(Map<String, Object> json) {
@@ -44,6 +54,70 @@ public class JsonTokenUtil {
       return v;
   }
 
+  /**
+   * Converts seconds since the epoch to an Instant. Values too large for milliseconds
+   * saturate to Long.MAX_VALUE or Long.MIN_VALUE milliseconds, the stand-ins for a
+   * missing exp or iat, so that they can still be shifted by the clock skew.
+   */
+  static Instant toInstant(long epochSecond) {
+    if (epochSecond >= Long.MAX_VALUE / 1000) {
+      return Instant.ofEpochMilli(Long.MAX_VALUE);
+    }
+    if (epochSecond <= Long.MIN_VALUE / 1000) {
+      return Instant.ofEpochMilli(Long.MIN_VALUE);
+    }
+    return Instant.ofEpochSecond(epochSecond);
+  }
+
+  /**
+   * Converts typed claims to the map form that {@link Checker#check(Map)} expects,
+   * leaving out absent iat and exp claims.
+   */
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> toMap(JsonTokenClaims claims) {
+    Map<String, Object> map = mapper.convertValue(claims, LinkedHashMap.class);
+    if (claims.getIssuedAt() == JsonTokenClaims.ABSENT) {
+      map.remove(JsonToken.ISSUED_AT);
+    }
+    if (claims.getExpiration() == JsonTokenClaims.ABSENT) {
+      map.remove(JsonToken.EXPIRATION);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the audience of an aud claim that holds a single one, either as a
+   * string or as an array with one element, and null otherwise.
+   */
+  static String singleAudience(Object audience) {
+    if (audience instanceof String) {
+      return (String) audience;
+    }
+    if (audience instanceof List && ((List<?>) audience).size() == 1) {
+      Object element = ((List<?>) audience).get(0);
+      return element instanceof String ? (String) element : null;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the audiences of an aud claim, which may be a string or an array.
+   */
+  static List<String> audiences(Object audience) {
+    if (audience instanceof String) {
+      return Collections.singletonList((String) audience);
+    }
+    List<String> audiences = new ArrayList<String>();
+    if (audience instanceof List) {
+      for (Object element : (List<?>) audience) {
+        if (element instanceof String) {
+          audiences.add((String) element);
+        }
+      }
+    }
+    return audiences;
+  }
+
   public static String convertToBase64(String source) {
     return Base64.encodeBase64URLSafeString(StringUtils.getBytesUtf8(source));
   }
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.EcdsaSHA256Signer;
+import net.oauth.jsontoken.crypto.EcdsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.Ed25519Signer;
+import net.oauth.jsontoken.crypto.Ed25519Verifier;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.HmacSHA256Verifier;
+import net.oauth.jsontoken.crypto.RsaSHA256Signer;
+import net.oauth.jsontoken.crypto.RsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Signer;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.VerifierProvider;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Warms up a {@link JsonTokenParser} before a service starts taking traffic, so
+ * that the first requests don't pay for cold key fetches, provider lookups,
+ * Jackson serializers and interpreted code.
+ *
+ * <ul>
+ * <li>Every expected (alg, iss, kid) is looked up through the parser's
+ * {@link VerifierProviders}, in parallel, which fills the providers' caches, and
+ * each verifier found is run once against a dummy signature of the algorithm's
+ * length, which initializes its signature engine.</li>
+ * <li>For every algorithm among the expected keys, tokens signed with a
+ * throwaway key are issued and verified by a parser with the same clock, for
+ * the configured number of iterations.</li>
+ * </ul>
+ *
+ * Warm-up doesn't throw when a key can't be found; {@link Report#isSuccessful()}
+ * tells whether everything was warmed up, and {@link Report#getFailures()} why not.
+ * Neither the parser's metrics nor its verified token cache see the synthetic
+ * tokens.
+ */
+public final class JsonTokenWarmUp {
+
+  public static final int DEFAULT_ITERATIONS = 500;
+
+  private static final String ISSUER = "jsontoken-warm-up";
+  private static final byte[] PROBE = "jsontoken-warm-up".getBytes(StandardCharsets.US_ASCII);
+  // the modulus sizes of 1024 to 4096 bit RSA keys, as RSA signatures are as long as the modulus
+  private static final int[] RSA_SIGNATURE_LENGTHS = {128, 256, 384, 512};
+
+  private final JsonTokenParser parser;
+  private final Executor executor;
+  private final List<ExpectedKey> keys = new ArrayList<ExpectedKey>();
+  private int iterations = DEFAULT_ITERATIONS;
+
+  /**
+   * Creates a warm-up that looks up keys on the common {@link ForkJoinPool}.
+   * @param parser the parser to warm up.
+   */
+  public JsonTokenWarmUp(JsonTokenParser parser) {
+    this(parser, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Public constructor.
+   * @param parser the parser to warm up.
+   * @param executor runs the key lookups.
+   */
+  public JsonTokenWarmUp(JsonTokenParser parser, Executor executor) {
+    this.parser = JsonTokenUtil.checkNotNull(parser);
+    this.executor = JsonTokenUtil.checkNotNull(executor);
+  }
+
+  /**
+   * Adds a key that tokens are expected to be signed with.
+   * @param sigAlg the token's alg.
+   * @param issuer the token's iss.
+   * @param keyId the token's kid, or null.
+   */
+  public JsonTokenWarmUp addKey(SignatureAlgorithm sigAlg, String issuer, String keyId) {
+    keys.add(new ExpectedKey(JsonTokenUtil.checkNotNull(sigAlg), issuer, keyId));
+    return this;
+  }
+
+  /**
+   * Sets how many tokens are signed and verified per algorithm.
+   */
+  public JsonTokenWarmUp setIterations(int iterations) {
+    if (iterations < 0) {
+      throw new IllegalArgumentException("iterations must not be negative");
+    }
+    this.iterations = iterations;
+    return this;
+  }
+
+  /**
+   * Runs the warm-up and reports how it went.
+   */
+  public Report run() {
+    long start = System.nanoTime();
+    List<CompletableFuture<String>> lookups = new ArrayList<CompletableFuture<String>>();
+    for (final ExpectedKey key : keys) {
+      lookups.add(CompletableFuture.supplyAsync(() -> lookUp(key), executor));
+    }
+    List<String> failures = new ArrayList<String>();
+    int resolved = 0;
+    for (CompletableFuture<String> lookup : lookups) {
+      String failure = lookup.join();
+      if (failure == null) {
+        resolved++;
+      } else {
+        failures.add(failure);
+      }
+    }
+    long lookedUp = System.nanoTime();
+
+    Set<SignatureAlgorithm> algorithms = EnumSet.noneOf(SignatureAlgorithm.class);
+    for (ExpectedKey key : keys) {
+      algorithms.add(key.sigAlg);
+    }
+    for (SignatureAlgorithm sigAlg : algorithms) {
+      try {
+        cycle(sigAlg);
+      } catch (Exception e) {
+        failures.add("warm-up of " + sigAlg + " failed: " + e);
+      }
+    }
+    long end = System.nanoTime();
+    return new Report(resolved, failures, iterations * algorithms.size(),
+        Duration.ofNanos(lookedUp - start), Duration.ofNanos(end - lookedUp));
+  }
+
+  /**
+   * Looks up an expected key and runs its verifiers once.
+   * @return null if the key was found, or why it wasn't.
+   */
+  private String lookUp(ExpectedKey key) {
+    VerifierProviders providers = parser.getVerifierProviders();
+    VerifierProvider provider = providers == null ? null : providers.getVerifierProvider(key.sigAlg);
+    if (provider == null) {
+      return "no verifier provider for " + key;
+    }
+    try {
+      List<Verifier> verifiers = provider.findVerifier(key.issuer, key.keyId);
+      if (verifiers == null || verifiers.isEmpty()) {
+        return "no verifier for " + key;
+      }
+      // verifiers reject signatures of the wrong length before reaching their
+      // engine, so the dummy signature has to be as long as a real one
+      int[] lengths = signatureLengths(key.sigAlg);
+      for (Verifier verifier : verifiers) {
+        for (int length : lengths) {
+          verifier.verify(PROBE, new byte[length]);
+        }
+      }
+      return null;
+    } catch (RuntimeException e) {
+      return "looking up " + key + " failed: " + e;
+    }
+  }
+
+  private static int[] signatureLengths(SignatureAlgorithm sigAlg) {
+    switch (sigAlg) {
+      case HS256:
+        return new int[] {32};
+      case HS1:
+        return new int[] {20};
+      case ES256:
+      case EdDSA:
+        return new int[] {64};
+      default:
+        return RSA_SIGNATURE_LENGTHS;
+    }
+  }
+
+  /**
+   * Issues and verifies tokens of one algorithm through the regular code paths.
+   */
+  private void cycle(final SignatureAlgorithm sigAlg) throws Exception {
+    Signer signer;
+    final Verifier verifier;
+    switch (sigAlg) {
+      case HS256: {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        signer = new HmacSHA256Signer(ISSUER, null, secret);
+        verifier = new HmacSHA256Verifier(secret);
+        break;
+      }
+      case RS256: {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        signer = new RsaSHA256Signer(ISSUER, null, (RSAPrivateKey) keyPair.getPrivate());
+        verifier = new RsaSHA256Verifier(keyPair.getPublic());
+        break;
+      }
+      case ES256: {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        signer = new EcdsaSHA256Signer(ISSUER, null, (ECPrivateKey) keyPair.getPrivate());
+        verifier = new EcdsaSHA256Verifier(keyPair.getPublic());
+        break;
+      }
+      case EdDSA: {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        signer = new Ed25519Signer(ISSUER, null, keyPair.getPrivate());
+        verifier = new Ed25519Verifier(keyPair.getPublic());
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("no signer for " + sigAlg);
+    }
+
+    VerifierProviders providers = new VerifierProviders();
+    final List<Verifier> verifiers = Collections.singletonList(verifier);
+    providers.setVerifierProvider(sigAlg, (issuer, keyId) -> verifiers);
+    Clock clock = parser.getClock();
+    JsonTokenParser synthetic = new JsonTokenParser(clock, providers, payload -> { });
+    for (int i = 0; i < iterations; i++) {
+      Instant now = clock.now();
+      JsonToken token = new JsonToken(signer, clock);
+      token.setAudience(ISSUER);
+      token.setIssuedAt(now);
+      token.setExpiration(now.plusSeconds(60));
+      token.setParam("jti", Integer.toString(i));
+      String tokenString = token.serializeAndSign();
+      synthetic.verifyAndDeserialize(tokenString);
+      synthetic.verifyAndDeserialize(tokenString, JsonTokenClaims.class);
+      VerificationResult result = synthetic.verifyToken(tokenString);
+      if (!result.isValid()) {
+        throw new IllegalStateException("synthetic token was rejected: " + result);
+      }
+    }
+  }
+
+  private static final class ExpectedKey {
+    final SignatureAlgorithm sigAlg;
+    final String issuer;
+    final String keyId;
+
+    ExpectedKey(SignatureAlgorithm sigAlg, String issuer, String keyId) {
+      this.sigAlg = sigAlg;
+      this.issuer = issuer;
+      this.keyId = keyId;
+    }
+
+    @Override
+    public String toString() {
+      return sigAlg + " key " + keyId + " of " + issuer;
+    }
+  }
+
+  /**
+   * What a warm-up did and how long it took.
+   */
+  public static final class Report {
+    private final int resolvedKeyCount;
+    private final List<String> failures;
+    private final int cycleCount;
+    private final Duration keyLookupDuration;
+    private final Duration cycleDuration;
+
+    Report(int resolvedKeyCount, List<String> failures, int cycleCount,
+        Duration keyLookupDuration, Duration cycleDuration) {
+      this.resolvedKeyCount = resolvedKeyCount;
+      this.failures = Collections.unmodifiableList(failures);
+      this.cycleCount = cycleCount;
+      this.keyLookupDuration = keyLookupDuration;
+      this.cycleDuration = cycleDuration;
+    }
+
+    /**
+     * Returns true if every expected key was found and every cycle succeeded.
+     */
+    public boolean isSuccessful() {
+      return failures.isEmpty();
+    }
+
+    /**
+     * Returns why keys couldn't be found or cycles failed.
+     */
+    public List<String> getFailures() {
+      return failures;
+    }
+
+    /**
+     * Returns how many expected keys were found.
+     */
+    public int getResolvedKeyCount() {
+      return resolvedKeyCount;
+    }
+
+    /**
+     * Returns how many synthetic tokens were meant to be signed and verified.
+     */
+    public int getCycleCount() {
+      return cycleCount;
+    }
+
+    /**
+     * Returns how long looking up the expected keys took.
+     */
+    public Duration getKeyLookupDuration() {
+      return keyLookupDuration;
+    }
+
+    /**
+     * Returns how long signing and verifying the synthetic tokens took.
+     */
+    public Duration getCycleDuration() {
+      return cycleDuration;
+    }
+
+    /**
+     * Returns how long the whole warm-up took.
+     */
+    public Duration getDuration() {
+      return keyLookupDuration.plus(cycleDuration);
+    }
+
+    @Override
+    public String toString() {
+      return "warm-up took " + getDuration().toMillis() + " ms: " + resolvedKeyCount
+          + " keys found in " + keyLookupDuration.toMillis() + " ms, " + cycleCount
+          + " tokens in " + cycleDuration.toMillis() + " ms"
+          + (failures.isEmpty() ? "" : ", failures: " + failures);
+    }
+  }
+}
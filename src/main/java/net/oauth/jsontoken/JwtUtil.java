@@ -41,8 +41,18 @@ public class JwtUtil {
 
 
     static VerifierProviders verifierProviders = null;
+    // HMAC signers are thread-safe, so one signer and template serve every token
+    static HmacSHA256Signer signer = null;
+    static JsonTokenTemplate template = null;
+    static JsonTokenParser parser = null;
     static{
         try {
+            signer = new HmacSHA256Signer(ISSUER, null, SIGNING_KEY.getBytes());
+            Map<String, Object> staticClaims = new LinkedHashMap<String, Object>();
+            staticClaims.put(JsonToken.AUDIENCE, "networknt.com");
+            staticClaims.put("typ", "networknt.com/auth/v1");
+            template = new JsonTokenTemplate(signer, staticClaims);
+
             final Verifier hmacVerifier = new HmacSHA256Verifier(SIGNING_KEY.getBytes());
             VerifierProvider hmacLocator = new VerifierProvider() {
                 @Override
@@ -54,6 +64,7 @@ public class JwtUtil {
             };
             verifierProviders = new VerifierProviders();
             verifierProviders.setVerifierProvider(SignatureAlgorithm.HS256, hmacLocator);
+            parser = new JsonTokenParser(verifierProviders, new SignedTokenAudienceChecker("networknt.com"));
 
         } catch (InvalidKeyException e) {
             e.printStackTrace();
@@ -77,14 +88,13 @@ public class JwtUtil {
     }
 
     public static String getJwt(Map<String, Object> userMap) throws InvalidKeyException, SignatureException {
-        JsonToken token = createToken(userMap);
-        return token.serializeAndSign();
+        // same token as createToken(userMap).serializeAndSign(), without re-serializing the header and static claims
+        Map<String, Object> claims = new LinkedHashMap<String, Object>();
+        claims.put("user", userMap);
+        return template.issue(claims);
     }
 
     public static JsonToken createToken(Map<String, Object> userMap) throws InvalidKeyException {
-        // Current time and signing algorithm
-        HmacSHA256Signer signer = new HmacSHA256Signer(ISSUER, null, SIGNING_KEY.getBytes());
-
         // Configure JSON token with signer and SystemClock
         JsonToken token = new JsonToken(signer);
         token.setAudience("networknt.com");
@@ -103,11 +113,9 @@ public class JwtUtil {
     }
 
     public static JsonToken Deserialize(String jwt) throws Exception {
-        JsonTokenParser parser = new JsonTokenParser(verifierProviders, new SignedTokenAudienceChecker("networknt.com"));
         return parser.deserialize(jwt);
     }
     public static JsonToken VerifyAndDeserialize(String jwt) throws Exception {
-        JsonTokenParser parser = new JsonTokenParser(verifierProviders, new SignedTokenAudienceChecker("networknt.com"));
         return parser.verifyAndDeserialize(jwt);
     }
 }
@@ -52,6 +52,15 @@ public class SystemClock implements Clock {
         return Instant.now();
     }
 
+    /**
+     * Returns {@link System#currentTimeMillis()}, or the time of {@link #now()} in
+     * subclasses, which may override it.
+     */
+    @Override
+    public long currentTimeMillis() {
+        return getClass() == SystemClock.class ? System.currentTimeMillis() : now().toEpochMilli();
+    }
+
   /**
      * Determines whether the current time (plus minus the acceptableClockSkewInMin) falls within the
    * interval defined by the start and intervalLength parameters.
@@ -60,7 +69,40 @@ public class SystemClock implements Clock {
   public boolean isCurrentTimeInInterval(Instant start, Instant end) {
         start = start.minusSeconds(acceptableClockSkewInMin*60);
         end = end.plusSeconds(acceptableClockSkewInMin*60);
-        return now().isAfter(start) && now().isBefore(end);
+        Instant now = now();
+        return now.isAfter(start) && now.isBefore(end);
   }
 
+    /**
+     * Same as {@link #isCurrentTimeInInterval(Instant, Instant)}, without allocating.
+     * Subclasses go through the Instant form, which they may override.
+     */
+    @Override
+    public boolean isCurrentTimeInInterval(long startEpochSecond, long endEpochSecond) {
+        if (getClass() != SystemClock.class) {
+            return Clock.super.isCurrentTimeInInterval(startEpochSecond, endEpochSecond);
+        }
+        return isInInterval(currentTimeMillis(), startEpochSecond, endEpochSecond);
+    }
+
+    /**
+     * Compares a time in milliseconds with an interval in seconds, allowing for the clock skew.
+     */
+    final boolean isInInterval(long nowInMillis, long startEpochSecond, long endEpochSecond) {
+        long skewInMillis = acceptableClockSkewInMin * 60000L;
+        return nowInMillis + skewInMillis > toMillis(startEpochSecond)
+                && nowInMillis - skewInMillis < toMillis(endEpochSecond);
+    }
+
+    // saturates instead of overflowing, so that Long.MAX_VALUE stands for "never"
+    private static long toMillis(long epochSecond) {
+        if (epochSecond >= Long.MAX_VALUE / 1000) {
+            return Long.MAX_VALUE;
+        }
+        if (epochSecond <= Long.MIN_VALUE / 1000) {
+            return Long.MIN_VALUE;
+        }
+        return epochSecond * 1000;
+    }
+
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A growable byte buffer that a token is serialized into: JSON is streamed through
+ * a base64url encoder straight into the buffer, and the signature base is signed
+ * in place, so that no intermediate Strings are built. Unlike its superclass, the
+ * buffer exposes its backing array.
+ *
+ * Instances are not thread-safe; {@link #get()} hands every thread its own.
+ */
+final class TokenBuffer extends ByteArrayOutputStream {
+
+  private static final int INITIAL_SIZE = 1024;
+  // don't keep the buffer of an unusually large token around
+  private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+  private static final byte[] ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+          .getBytes(StandardCharsets.US_ASCII);
+
+  private static final ThreadLocal<TokenBuffer> BUFFER = new ThreadLocal<TokenBuffer>() {
+    @Override
+    protected TokenBuffer initialValue() {
+      return new TokenBuffer(INITIAL_SIZE);
+    }
+  };
+
+  private final Base64UrlEncoder encoder = new Base64UrlEncoder();
+
+  TokenBuffer(int size) {
+    super(size);
+  }
+
+  /**
+   * Returns the calling thread's buffer, emptied. Its contents must be consumed
+   * before the next call on the same thread, and {@link #release()} should be
+   * called afterwards.
+   */
+  static TokenBuffer get() {
+    TokenBuffer buffer = BUFFER.get();
+    buffer.reset();
+    return buffer;
+  }
+
+  /**
+   * Empties the buffer, including bytes the encoder held back from a segment that
+   * was never finished.
+   */
+  @Override
+  public void reset() {
+    super.reset();
+    encoder.discard();
+  }
+
+  /**
+   * Drops the calling thread's buffer if it grew unusually large.
+   */
+  void release() {
+    if (buf.length > MAX_RETAINED_SIZE) {
+      BUFFER.remove();
+    }
+  }
+
+  /**
+   * Returns the backing array; the contents are its first {@link #size()} bytes.
+   */
+  byte[] array() {
+    return buf;
+  }
+
+  /**
+   * Appends a byte range encoded as base64url, without padding.
+   */
+  void writeBase64Url(byte[] source, int offset, int length) {
+    encoder.write(source, offset, length);
+    encoder.finish();
+  }
+
+  /**
+   * Appends a map serialized as JSON and encoded as base64url, without padding.
+   */
+  void writeBase64UrlJson(ObjectMapper mapper, Map<String, Object> json) throws IOException {
+    // writeValue closes the encoder, which writes out the last partial group
+    mapper.writeValue(encoder, json);
+  }
+
+  /**
+   * Returns an encoder that appends the bytes written to it as base64url. Closing
+   * the encoder, or calling {@link Base64UrlEncoder#finish()}, completes the segment.
+   */
+  Base64UrlEncoder base64UrlEncoder() {
+    return encoder;
+  }
+
+  /**
+   * Appends the US-ASCII bytes of a String. Characters outside US-ASCII are replaced by '?'.
+   */
+  void writeAscii(CharSequence source) {
+    int length = source.length();
+    ensureCapacity(count + length);
+    for (int i = 0; i < length; i++) {
+      char c = source.charAt(i);
+      buf[count++] = c < 128 ? (byte) c : (byte) '?';
+    }
+  }
+
+  /**
+   * Copies the contents into a ByteBuffer.
+   * @throws java.nio.BufferOverflowException if the ByteBuffer has too little room left.
+   */
+  void writeTo(ByteBuffer dest) {
+    dest.put(buf, 0, count);
+  }
+
+  /**
+   * Appends the contents, which must be US-ASCII, to an Appendable.
+   */
+  void writeTo(Appendable dest) throws IOException {
+    if (dest instanceof StringBuilder) {
+      StringBuilder builder = (StringBuilder) dest;
+      builder.ensureCapacity(builder.length() + count);
+    }
+    for (int i = 0; i < count; i++) {
+      dest.append((char) buf[i]);
+    }
+  }
+
+  /**
+   * Returns the contents, which must be US-ASCII, as a String.
+   */
+  String toAsciiString() {
+    return new String(buf, 0, count, StandardCharsets.US_ASCII);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buf.length) {
+      byte[] grown = new byte[Math.max(capacity, buf.length << 1)];
+      System.arraycopy(buf, 0, grown, 0, count);
+      buf = grown;
+    }
+  }
+
+  /**
+   * Encodes the bytes written to it as base64url into the enclosing buffer.
+   * Up to two trailing bytes are held back until {@link #finish()}.
+   */
+  final class Base64UrlEncoder extends OutputStream {
+    private int pending;
+    private int pendingBits;
+
+    @Override
+    public void write(int b) {
+      pendingBits = (pendingBits << 8) | (b & 0xff);
+      if (++pending == 3) {
+        ensureCapacity(count + 4);
+        writeGroup(pendingBits);
+        pending = 0;
+        pendingBits = 0;
+      }
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length) {
+      int end = offset + length;
+      while (pending != 0 && offset < end) {
+        write(source[offset++]);
+      }
+      ensureCapacity(count + (end - offset) / 3 * 4);
+      for (; end - offset >= 3; offset += 3) {
+        writeGroup(((source[offset] & 0xff) << 16)
+            | ((source[offset + 1] & 0xff) << 8)
+            | (source[offset + 2] & 0xff));
+      }
+      while (offset < end) {
+        write(source[offset++]);
+      }
+    }
+
+    /**
+     * Writes out the held back bytes, ending the segment. Further writes start a new segment.
+     */
+    void finish() {
+      if (pending == 1) {
+        ensureCapacity(count + 2);
+        buf[count++] = ALPHABET[(pendingBits >> 2) & 0x3f];
+        buf[count++] = ALPHABET[(pendingBits << 4) & 0x3f];
+      } else if (pending == 2) {
+        ensureCapacity(count + 3);
+        buf[count++] = ALPHABET[(pendingBits >> 10) & 0x3f];
+        buf[count++] = ALPHABET[(pendingBits >> 4) & 0x3f];
+        buf[count++] = ALPHABET[(pendingBits << 2) & 0x3f];
+      }
+      pending = 0;
+      pendingBits = 0;
+    }
+
+    @Override
+    public void close() {
+      finish();
+    }
+
+    private void discard() {
+      pending = 0;
+      pendingBits = 0;
+    }
+
+    private void writeGroup(int bits) {
+      buf[count++] = ALPHABET[(bits >> 18) & 0x3f];
+      buf[count++] = ALPHABET[(bits >> 12) & 0x3f];
+      buf[count++] = ALPHABET[(bits >> 6) & 0x3f];
+      buf[count++] = ALPHABET[bits & 0x3f];
+    }
+  }
+}
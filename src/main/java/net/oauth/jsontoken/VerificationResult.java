@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+/**
+ * The outcome of verifying one serialized token: either the verified
+ * {@link JsonToken}, or the reason it was rejected.
+ */
+public final class VerificationResult {
+
+  /**
+   * Why a token was rejected.
+   */
+  public enum Reason {
+    /** The token is not three base64url segments of JSON, or lacks an algorithm. */
+    BAD_FORMAT,
+    /** The algorithm is unknown, or no verifier provider is registered for it. */
+    UNKNOWN_ALGORITHM,
+    /** The verifier provider has no verification key for the issuer and key id. */
+    NO_VERIFIER,
+    /** None of the verification keys accepts the signature. */
+    BAD_SIGNATURE,
+    /** The token is expired, not yet valid, or its iat is after its exp. */
+    INVALID_TIME,
+    /** An {@link AudienceChecker} rejected the token's audience. */
+    WRONG_AUDIENCE,
+    /** One of the parser's other checkers rejected the payload. */
+    CHECK_FAILED
+  }
+
+  private final String tokenString;
+  private final JsonToken token;
+  private final Reason reason;
+  private final String message;
+
+  private VerificationResult(String tokenString, JsonToken token, Reason reason, String message) {
+    this.tokenString = tokenString;
+    this.token = token;
+    this.reason = reason;
+    this.message = message;
+  }
+
+  /**
+   * Returns the result for a token that passed verification.
+   */
+  public static VerificationResult success(String tokenString, JsonToken token) {
+    return new VerificationResult(tokenString, JsonTokenUtil.checkNotNull(token), null, null);
+  }
+
+  /**
+   * Returns the result for a rejected token.
+   */
+  public static VerificationResult failure(String tokenString, Reason reason, String message) {
+    return new VerificationResult(tokenString, null, JsonTokenUtil.checkNotNull(reason), message);
+  }
+
+  /**
+   * Returns true if the token passed verification.
+   */
+  public boolean isValid() {
+    return token != null;
+  }
+
+  /**
+   * Returns the serialized token this result is for.
+   */
+  public String getTokenString() {
+    return tokenString;
+  }
+
+  /**
+   * Returns the verified token, or null if it was rejected.
+   */
+  public JsonToken getToken() {
+    return token;
+  }
+
+  /**
+   * Returns why the token was rejected, or null if it passed verification.
+   */
+  public Reason getReason() {
+    return reason;
+  }
+
+  /**
+   * Returns a description of the rejection, or null if the token passed verification.
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return isValid() ? "valid" : reason + ": " + message;
+  }
+}
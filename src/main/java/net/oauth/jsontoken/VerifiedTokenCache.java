@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bounded cache of tokens whose signature has already been verified, keyed
+ * by the serialized token string. A {@link JsonTokenParser} that has been given
+ * such a cache skips deserialization, verifier lookup and signature verification
+ * for tokens it has seen before, but still runs the iat/exp and {@link Checker}
+ * validation on every hit.
+ *
+ * The cache is split into independently locked segments, each of which evicts
+ * its least recently used entry once full. Entries expire no later than the
+ * token's exp claim, and no later than the configured maximum time-to-live.
+ *
+ * Tokens returned from the cache are shared between callers and must be
+ * treated as read-only.
+ *
+ * A cache vouches for signatures checked with one parser's verifier providers,
+ * so it belongs to the first {@link JsonTokenParser} it is set on; setting it on
+ * a second parser throws. Give each parser its own cache.
+ */
+public class VerifiedTokenCache {
+
+  public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+  public static final long DEFAULT_MAXIMUM_TTL_IN_SECONDS = 3600;
+
+  private static final int SEGMENTS = 16;
+
+  private final Segment[] segments;
+  private final long maximumTtlInMillis;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicReference<JsonTokenParser> owner = new AtomicReference<JsonTokenParser>();
+
+  /**
+   * Creates a cache holding up to {@link #DEFAULT_MAXIMUM_SIZE} tokens, each for
+   * at most {@link #DEFAULT_MAXIMUM_TTL_IN_SECONDS}.
+   */
+  public VerifiedTokenCache() {
+    this(DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_TTL_IN_SECONDS);
+  }
+
+  /**
+   * Public constructor.
+   * @param maximumSize the maximum number of tokens held by the cache.
+   * @param maximumTtlInSeconds how long a token may stay in the cache, even if
+   *   its exp claim is further away (or missing).
+   */
+  public VerifiedTokenCache(int maximumSize, long maximumTtlInSeconds) {
+    if (maximumSize < SEGMENTS) {
+      throw new IllegalArgumentException("maximumSize must be at least " + SEGMENTS);
+    }
+    if (maximumTtlInSeconds <= 0) {
+      throw new IllegalArgumentException("maximumTtlInSeconds must be positive");
+    }
+    this.maximumTtlInMillis = maximumTtlInSeconds * 1000;
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(maximumSize / SEGMENTS);
+    }
+  }
+
+  /**
+   * Returns the verified token for the given token string, or null if it is
+   * not cached or has expired.
+   * @param tokenString the serialized token.
+   * @param now the current time.
+   */
+  public JsonToken get(String tokenString, Instant now) {
+    return get(tokenString, now.toEpochMilli());
+  }
+
+  /**
+   * Same as {@link #get(String, Instant)}, with the current time in milliseconds
+   * since the epoch.
+   */
+  public JsonToken get(String tokenString, long nowInMillis) {
+    JsonToken token = segmentFor(tokenString).get(tokenString, nowInMillis);
+    if (token == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return token;
+  }
+
+  /**
+   * Caches a token whose signature has been verified. Tokens that have already
+   * expired are not cached.
+   * @param tokenString the serialized token.
+   * @param token the verified token.
+   * @param now the current time.
+   */
+  public void put(String tokenString, JsonToken token, Instant now) {
+    put(tokenString, token, now.toEpochMilli());
+  }
+
+  /**
+   * Same as {@link #put(String, JsonToken, Instant)}, with the current time in
+   * milliseconds since the epoch.
+   */
+  public void put(String tokenString, JsonToken token, long nowInMillis) {
+    long expiresAt = nowInMillis + maximumTtlInMillis;
+    long expiration = token.getEpochSecond(JsonToken.EXPIRATION);
+    if (expiration != JsonTokenClaims.ABSENT) {
+      expiresAt = Math.min(expiresAt, expiration * 1000);
+    }
+    if (expiresAt > nowInMillis) {
+      segmentFor(tokenString).put(tokenString, new Entry(token, expiresAt));
+    }
+  }
+
+  /**
+   * Removes all tokens from the cache. The hit and miss counters are kept.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Returns the number of tokens currently held, including expired tokens that
+   * have not been looked up or evicted yet.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns how many lookups found a verified token.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns how many lookups did not find a verified token.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Ties the cache to the parser whose verifications it holds.
+   * @throws IllegalStateException if the cache already belongs to another parser.
+   */
+  void bindTo(JsonTokenParser parser) {
+    if (!owner.compareAndSet(null, parser) && owner.get() != parser) {
+      throw new IllegalStateException("VerifiedTokenCache is already used by another parser");
+    }
+  }
+
+  private Segment segmentFor(String tokenString) {
+    int hash = tokenString.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[hash & (SEGMENTS - 1)];
+  }
+
+  private static final class Entry {
+    final JsonToken token;
+    final long expiresAt;
+
+    Entry(JsonToken token, long expiresAt) {
+      this.token = token;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * A least-recently-used map guarded by its own lock.
+   */
+  private static final class Segment {
+    private final Map<String, Entry> entries;
+
+    Segment(final int capacity) {
+      this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+          return size() > capacity;
+        }
+      };
+    }
+
+    synchronized JsonToken get(String tokenString, long now) {
+      Entry entry = entries.get(tokenString);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt <= now) {
+        entries.remove(tokenString);
+        return null;
+      }
+      return entry.token;
+    }
+
+    synchronized void put(String tokenString, Entry entry) {
+      entries.put(tokenString, entry);
+    }
+
+    synchronized void clear() {
+      entries.clear();
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.crypto;
+
+import java.security.InvalidKeyException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPrivateKey;
+
+/**
+ * Signer that can sign byte arrays using ECDSA on the P-256 curve and SHA-256
+ * (ES256). Signatures are 64 bytes, r||s as JOSE requires, instead of the DER
+ * encoding that {@link Signature} produces. Instances are thread-safe: every
+ * thread signs with its own {@link Signature}, initialized once from the key.
+ */
+public class EcdsaSHA256Signer extends AbstractSigner {
+
+  static final int COMPONENT_SIZE = 32;
+
+  private final ThreadLocalSignature signatures;
+
+  /**
+   * Public constructor.
+   * @param issuer The id of this signer, to be included in the JSON Token's envelope.
+   * @param keyId The id of the key used by this signer, to be included in the JSON Token's envelope.
+   * @param key the P-256 private key to be used for signing.
+   * @throws InvalidKeyException if the key is not on the P-256 curve.
+   */
+  public EcdsaSHA256Signer(String issuer, String keyId, ECPrivateKey key) throws InvalidKeyException {
+    super(issuer, keyId);
+    if (!EcdsaSignatures.isP256(key.getParams())) {
+      throw new InvalidKeyException("ES256 requires a P-256 key");
+    }
+    this.signatures = ThreadLocalSignature.forSigning("SHA256withECDSA", key);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Signer#getSignatureAlgorithm()
+   */
+  @Override
+  public SignatureAlgorithm getSignatureAlgorithm() {
+    return SignatureAlgorithm.ES256;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Signer#sign(byte[])
+   */
+  @Override
+  public byte[] sign(byte[] source) throws SignatureException {
+    return sign(source, 0, source.length);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Signer#sign(byte[], int, int)
+   */
+  @Override
+  public byte[] sign(byte[] source, int offset, int length) throws SignatureException {
+    Signature signature = signatures.get();
+    try {
+      signature.update(source, offset, length);
+      return EcdsaSignatures.derToRaw(signature.sign(), COMPONENT_SIZE);
+    } catch (SignatureException e) {
+      // don't reuse an instance that failed half-way through
+      signatures.remove();
+      throw e;
+    }
+  }
+}
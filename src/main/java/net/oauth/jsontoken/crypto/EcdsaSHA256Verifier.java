@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.crypto;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+
+/**
+ * A verifier that can verify ES256 signatures, ECDSA on the P-256 curve with
+ * SHA-256 in the r||s encoding JOSE uses. Instances are thread-safe and can be
+ * shared by concurrent verifying threads.
+ */
+public class EcdsaSHA256Verifier implements Verifier {
+
+  private final ThreadLocalSignature signatures;
+
+  /**
+   * Public Constructor.
+   * @param verificationKey the key used to verify the signature.
+   * @throws IllegalStateException if the key is not a P-256 public key.
+   */
+  public EcdsaSHA256Verifier(PublicKey verificationKey) {
+    if (!(verificationKey instanceof ECPublicKey)
+        || !EcdsaSignatures.isP256(((ECPublicKey) verificationKey).getParams())) {
+      throw new IllegalStateException("ES256 requires a P-256 key");
+    }
+    this.signatures = ThreadLocalSignature.forVerification("SHA256withECDSA", verificationKey);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Verifier#verifySignature(byte[], byte[])
+   */
+  @Override
+  public void verifySignature(byte[] source, byte[] signature) throws SignatureException {
+    if (!verify(source, signature)) {
+      throw new SignatureException("signature did not verify");
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Verifier#verify(byte[], byte[])
+   */
+  @Override
+  public boolean verify(byte[] source, byte[] signature) {
+    if (signature == null || signature.length != 2 * EcdsaSHA256Signer.COMPONENT_SIZE) {
+      return false;
+    }
+    return signatures.verify(source, EcdsaSignatures.rawToDer(signature));
+  }
+}
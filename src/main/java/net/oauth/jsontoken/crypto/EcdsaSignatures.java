@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.crypto;
+
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+
+/**
+ * Converts ECDSA signatures between the DER encoding produced and expected by
+ * {@link java.security.Signature} and the fixed-length r||s encoding that JOSE
+ * (RFC 7518, section 3.4) uses in tokens, and checks that keys are on P-256.
+ */
+final class EcdsaSignatures {
+
+  private static final ECParameterSpec P256 = p256();
+
+  private EcdsaSignatures() {
+  }
+
+  private static ECParameterSpec p256() {
+    try {
+      AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+      parameters.init(new ECGenParameterSpec("secp256r1"));
+      return parameters.getParameterSpec(ECParameterSpec.class);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("platform is missing the P-256 curve", e);
+    }
+  }
+
+  /**
+   * Returns whether the parameters describe P-256 (secp256r1), rather than just
+   * some curve over a 256-bit field such as secp256k1.
+   */
+  static boolean isP256(ECParameterSpec params) {
+    return params != null
+        && params.getCurve().equals(P256.getCurve())
+        && params.getGenerator().equals(P256.getGenerator())
+        && params.getOrder().equals(P256.getOrder())
+        && params.getCofactor() == P256.getCofactor();
+  }
+
+  /**
+   * Converts a DER encoded SEQUENCE { INTEGER r, INTEGER s } to r||s, each
+   * left-padded to {@code size} bytes.
+   */
+  static byte[] derToRaw(byte[] der, int size) throws SignatureException {
+    int offset = 2;
+    if (der.length < 8 || der[0] != 0x30) {
+      throw new SignatureException("invalid DER encoded ECDSA signature");
+    }
+    if ((der[1] & 0xff) == 0x81) {
+      offset = 3;
+    }
+    byte[] raw = new byte[2 * size];
+    offset = copyInteger(der, offset, raw, 0, size);
+    copyInteger(der, offset, raw, size, size);
+    return raw;
+  }
+
+  private static int copyInteger(byte[] der, int offset, byte[] raw, int rawOffset, int size)
+      throws SignatureException {
+    if (offset + 2 > der.length || der[offset] != 0x02) {
+      throw new SignatureException("invalid DER encoded ECDSA signature");
+    }
+    int length = der[offset + 1] & 0xff;
+    int start = offset + 2;
+    if (start + length > der.length) {
+      throw new SignatureException("invalid DER encoded ECDSA signature");
+    }
+    // drop the sign byte and any other leading zeros
+    int skip = 0;
+    while (length - skip > size && der[start + skip] == 0) {
+      skip++;
+    }
+    if (length - skip > size) {
+      throw new SignatureException("ECDSA signature component is too long");
+    }
+    System.arraycopy(der, start + skip, raw, rawOffset + size - (length - skip), length - skip);
+    return start + length;
+  }
+
+  /**
+   * Converts r||s to a DER encoded SEQUENCE { INTEGER r, INTEGER s }.
+   */
+  static byte[] rawToDer(byte[] raw) {
+    int size = raw.length / 2;
+    int rLength = integerLength(raw, 0, size);
+    int sLength = integerLength(raw, size, size);
+    int sequenceLength = 2 + rLength + 2 + sLength;
+    int header = sequenceLength > 127 ? 3 : 2;
+    byte[] der = new byte[header + sequenceLength];
+    der[0] = 0x30;
+    if (header == 3) {
+      der[1] = (byte) 0x81;
+      der[2] = (byte) sequenceLength;
+    } else {
+      der[1] = (byte) sequenceLength;
+    }
+    int offset = writeInteger(raw, 0, size, rLength, der, header);
+    writeInteger(raw, size, size, sLength, der, offset);
+    return der;
+  }
+
+  // length of the DER INTEGER content: no leading zeros, but a zero before a set high bit
+  private static int integerLength(byte[] raw, int offset, int size) {
+    int skip = 0;
+    while (skip < size - 1 && raw[offset + skip] == 0) {
+      skip++;
+    }
+    int length = size - skip;
+    return (raw[offset + skip] & 0x80) != 0 ? length + 1 : length;
+  }
+
+  private static int writeInteger(byte[] raw, int offset, int size, int length, byte[] der,
+      int derOffset) {
+    der[derOffset] = 0x02;
+    der[derOffset + 1] = (byte) length;
+    int copied = Math.min(length, size);
+    System.arraycopy(raw, offset + size - copied, der, derOffset + 2 + length - copied, copied);
+    return derOffset + 2 + length;
+  }
+}
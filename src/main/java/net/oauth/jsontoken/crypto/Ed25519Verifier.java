@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.crypto;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+
+/**
+ * A verifier that can verify Ed25519 signatures. Needs a Java 15 or later
+ * runtime. Instances are thread-safe and can be shared by concurrent verifying
+ * threads.
+ */
+public class Ed25519Verifier implements Verifier {
+
+  private final ThreadLocalSignature signatures;
+
+  /**
+   * Public Constructor.
+   * @param verificationKey the key used to verify the signature.
+   * @throws IllegalStateException if the runtime does not support Ed25519 or the key is invalid.
+   */
+  public Ed25519Verifier(PublicKey verificationKey) {
+    this.signatures = ThreadLocalSignature.forVerification(Ed25519Signer.ALGORITHM, verificationKey);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Verifier#verifySignature(byte[], byte[])
+   */
+  @Override
+  public void verifySignature(byte[] source, byte[] signature) throws SignatureException {
+    if (!verify(source, signature)) {
+      throw new SignatureException("signature did not verify");
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Verifier#verify(byte[], byte[])
+   */
+  @Override
+  public boolean verify(byte[] source, byte[] signature) {
+    if (signature == null || signature.length != Ed25519Signer.SIGNATURE_LENGTH) {
+      return false;
+    }
+    return signatures.verify(source, signature);
+  }
+}
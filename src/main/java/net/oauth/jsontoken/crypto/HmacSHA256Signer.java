@@ -24,14 +24,22 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
- * A signer that can sign byte arrays using HMAC-SHA256.
+ * A signer that can sign byte arrays using HMAC-SHA256. Instances are thread-safe:
+ * every thread signs with its own {@link Mac}, initialized once from the key, so
+ * concurrent callers never contend on a shared lock.
  */
 public class HmacSHA256Signer extends AbstractSigner {
 
   private static final String HMAC_SHA256_ALG = "HmacSHA256";
 
-  private final Mac hmac;
+  private final Mac prototype;
   private final SecretKey signingKey;
+  private final ThreadLocal<Mac> hmac = new ThreadLocal<Mac>() {
+    @Override
+    protected Mac initialValue() {
+      return newMac();
+    }
+  };
 
   /**
    * Public constructor.
@@ -46,13 +54,13 @@ public class HmacSHA256Signer extends AbstractSigner {
 
     this.signingKey = new SecretKeySpec(keyBytes, HMAC_SHA256_ALG);
     try {
-      this.hmac = Mac.getInstance(HMAC_SHA256_ALG);
+      this.prototype = Mac.getInstance(HMAC_SHA256_ALG);
     } catch (NoSuchAlgorithmException e) {
       throw new IllegalStateException("cannot use Hmac256Signer on system without HmacSHA256 alg", e);
     }
 
     // just to make sure we catch invalid keys early, let's initialize the hmac and throw if something goes wrong
-    hmac.init(signingKey);
+    prototype.init(signingKey);
   }
 
   /*
@@ -60,14 +68,41 @@ public class HmacSHA256Signer extends AbstractSigner {
    * @see net.oauth.jsontoken.crypto.Signer#sign(byte[])
    */
   @Override
-  public synchronized byte[] sign(byte[] source) {
+  public byte[] sign(byte[] source) {
+    // doFinal resets the Mac to its initialized state, so it is ready for the next call
+    return hmac.get().doFinal(source);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Signer#sign(byte[], int, int)
+   */
+  @Override
+  public byte[] sign(byte[] source, int offset, int length) {
+    Mac mac = hmac.get();
+    mac.update(source, offset, length);
+    return mac.doFinal();
+  }
+
+  /**
+   * Returns a {@link Mac} initialized with the signing key, preferably by cloning the
+   * prototype created in the constructor, which is never used for signing itself.
+   */
+  private Mac newMac() {
     try {
-      hmac.init(signingKey);
-    } catch (InvalidKeyException e) {
-      // this should not happen - we tested this in the constructor
-      throw new IllegalStateException("key somehow became invalid since calling the constructor", e);
+      return (Mac) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      try {
+        Mac mac = Mac.getInstance(HMAC_SHA256_ALG);
+        mac.init(signingKey);
+        return mac;
+      } catch (NoSuchAlgorithmException nsae) {
+        throw new IllegalStateException("cannot use Hmac256Signer on system without HmacSHA256 alg", nsae);
+      } catch (InvalidKeyException ike) {
+        // this should not happen - we tested this in the constructor
+        throw new IllegalStateException("key somehow became invalid since calling the constructor", ike);
+      }
     }
-    return hmac.doFinal(source);
   }
 
   /*
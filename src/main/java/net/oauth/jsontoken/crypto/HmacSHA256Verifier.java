@@ -22,6 +22,7 @@ import java.util.Arrays;
 
 /**
  * A {@link Verifier} that uses HMAC-SHA256 to verify symmetric-key signatures on byte arrays.
+ * Instances are thread-safe and can be shared by concurrent verifying threads.
  */
 public class HmacSHA256Verifier implements Verifier {
 
@@ -42,12 +43,20 @@ public class HmacSHA256Verifier implements Verifier {
    */
   @Override
   public void verifySignature(byte[] source, byte[] signature) throws SignatureException {
-    byte[] comparison = signer.sign(source);
-    if (!compareBytes(signature, comparison)) {
+    if (!verify(source, signature)) {
       throw new SignatureException("signature did not verify");
     }
   }
 
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Verifier#verify(byte[], byte[])
+   */
+  @Override
+  public boolean verify(byte[] source, byte[] signature) {
+    return compareBytes(signature, signer.sign(source));
+  }
+
   /**
    * Performs a byte-by-byte comparison of {@code first} and {@code second} parameters. This
    * method will "NOT" short-circuit the comparison once it has detected a byte difference in
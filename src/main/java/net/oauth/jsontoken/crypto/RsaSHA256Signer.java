@@ -17,19 +17,17 @@
 package net.oauth.jsontoken.crypto;
 
 import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.security.interfaces.RSAPrivateKey;
 
 /**
- * Signer that can sign byte arrays using RSA and SHA-256.
+ * Signer that can sign byte arrays using RSA and SHA-256. Instances are thread-safe:
+ * every thread signs with its own {@link Signature}, initialized once from the key.
  */
 public class RsaSHA256Signer extends AbstractSigner {
 
-  private final Signature signature;
-  private final PrivateKey signingKey;
+  private final ThreadLocalSignature signatures;
 
   /**
    * Public constructor.
@@ -41,14 +39,7 @@ public class RsaSHA256Signer extends AbstractSigner {
   public RsaSHA256Signer(String issuer, String keyId, RSAPrivateKey key) throws InvalidKeyException {
     super(issuer, keyId);
 
-    this.signingKey = key;
-
-    try {
-      this.signature = Signature.getInstance("SHA256withRSA");
-      this.signature.initSign(signingKey);
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException("platform is missing RSAwithSHA256 signature alg, or key is invalid", e);
-    }
+    this.signatures = ThreadLocalSignature.forSigning("SHA256withRSA", key);
   }
 
   /*
@@ -66,12 +57,23 @@ public class RsaSHA256Signer extends AbstractSigner {
    */
   @Override
   public byte[] sign(byte[] source) throws SignatureException {
+    return sign(source, 0, source.length);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Signer#sign(byte[], int, int)
+   */
+  @Override
+  public byte[] sign(byte[] source, int offset, int length) throws SignatureException {
+    Signature signature = signatures.get();
     try {
-      signature.initSign(signingKey);
-    } catch (InvalidKeyException e) {
-      throw new RuntimeException("key somehow became invalid since calling the constructor");
+      signature.update(source, offset, length);
+      return signature.sign();
+    } catch (SignatureException e) {
+      // don't reuse an instance that failed half-way through
+      signatures.remove();
+      throw e;
     }
-    signature.update(source);
-    return signature.sign();
   }
 }
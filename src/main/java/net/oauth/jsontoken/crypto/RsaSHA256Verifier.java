@@ -16,34 +16,23 @@
  */
 package net.oauth.jsontoken.crypto;
 
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
 import java.security.SignatureException;
 
 /**
  * A verifier that can verify signatures on byte arrays using RSA and SHA-256.
+ * Instances are thread-safe and can be shared by concurrent verifying threads.
  */
 public class RsaSHA256Verifier implements Verifier {
 
-  private final PublicKey verificationKey;
-  private final Signature signer;
+  private final ThreadLocalSignature signatures;
 
   /**
    * Public Constructor.
    * @param verificationKey the key used to verify the signature.
    */
   public RsaSHA256Verifier(PublicKey verificationKey) {
-    this.verificationKey = verificationKey;
-    try {
-      this.signer = Signature.getInstance("SHA256withRSA");
-      this.signer.initVerify(verificationKey);
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException("platform is missing RSAwithSHA256 signature alg", e);
-    } catch (InvalidKeyException e) {
-      throw new IllegalStateException("key is invalid", e);
-    }
+    this.signatures = ThreadLocalSignature.forVerification("SHA256withRSA", verificationKey);
   }
 
   /*
@@ -52,14 +41,17 @@ public class RsaSHA256Verifier implements Verifier {
    */
   @Override
   public void verifySignature(byte[] source, byte[] signature) throws SignatureException {
-    try {
-      signer.initVerify(verificationKey);
-    } catch (InvalidKeyException e) {
-      throw new RuntimeException("key someone become invalid since calling the constructor");
-    }
-    signer.update(source);
-    if (!signer.verify(signature)) {
+    if (!signatures.verify(source, signature)) {
       throw new SignatureException("signature did not verify");
     }
   }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.crypto.Verifier#verify(byte[], byte[])
+   */
+  @Override
+  public boolean verify(byte[] source, byte[] signature) {
+    return signatures.verify(source, signature);
+  }
 }
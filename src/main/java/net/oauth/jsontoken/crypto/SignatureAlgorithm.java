@@ -23,7 +23,9 @@ public enum SignatureAlgorithm {
   HS256("SHA256"),
   HS1("SHA1"),
   RS256("SHA256"),
-  RS1("SHA1");
+  RS1("SHA1"),
+  ES256("SHA256"),
+  EdDSA("SHA512");
 
   private final String hashAlg;
 
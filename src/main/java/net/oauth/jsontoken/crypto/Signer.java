@@ -17,6 +17,7 @@
 package net.oauth.jsontoken.crypto;
 
 import java.security.SignatureException;
+import java.util.Arrays;
 
 /**
  * Interface that a token signer has to implement. A Signer represents a specific
@@ -53,4 +54,20 @@ public interface Signer {
    */
   public byte[] sign(byte[] source) throws SignatureException;
 
+  /**
+   * Signs a range of an array of bytes. Implementations should override this to
+   * sign the range in place instead of copying it.
+   * @param source Array holding the bytes that should be signed.
+   * @param offset Index of the first byte to sign.
+   * @param length Number of bytes to sign.
+   * @return The signature on the bytes.
+   * @throws SignatureException if the signer could not create the signature.
+   */
+  public default byte[] sign(byte[] source, int offset, int length) throws SignatureException {
+    if (offset == 0 && length == source.length) {
+      return sign(source);
+    }
+    return sign(Arrays.copyOfRange(source, offset, offset + length));
+  }
+
 }
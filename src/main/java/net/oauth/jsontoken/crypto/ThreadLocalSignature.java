@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.crypto;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.RSAKey;
+
+/**
+ * Hands every thread its own {@link Signature}, initialized once for signing or
+ * verification with a fixed key. A Signature returns to its initialized state after
+ * each sign() or verify(), so the per-thread instance can be reused without calling
+ * initSign/initVerify again. This lets signers and verifiers be shared between threads
+ * without a lock and without a {@code Signature.getInstance} per call.
+ */
+final class ThreadLocalSignature extends ThreadLocal<Signature> {
+
+  private final String algorithm;
+  private final PublicKey verificationKey;
+  private final PrivateKey signingKey;
+  private final int signatureLength;
+
+  private ThreadLocalSignature(String algorithm, PublicKey verificationKey, PrivateKey signingKey) {
+    this.algorithm = algorithm;
+    this.verificationKey = verificationKey;
+    this.signingKey = signingKey;
+    // RSA signatures are exactly as long as the modulus
+    this.signatureLength = verificationKey instanceof RSAKey
+        ? (((RSAKey) verificationKey).getModulus().bitLength() + 7) / 8
+        : -1;
+  }
+
+  /**
+   * Creates per-thread Signatures for verifying with the given key.
+   * @throws IllegalStateException if the platform lacks the algorithm or the key is invalid.
+   */
+  static ThreadLocalSignature forVerification(String algorithm, PublicKey verificationKey) {
+    ThreadLocalSignature signatures = new ThreadLocalSignature(algorithm, verificationKey, null);
+    try {
+      // create the calling thread's instance right away, so that problems show up early
+      signatures.set(signatures.newSignature());
+    } catch (InvalidKeyException e) {
+      throw new IllegalStateException("key is invalid", e);
+    }
+    return signatures;
+  }
+
+  /**
+   * Creates per-thread Signatures for signing with the given key.
+   * @throws InvalidKeyException if the key is unsuitable for the algorithm.
+   * @throws IllegalStateException if the platform lacks the algorithm.
+   */
+  static ThreadLocalSignature forSigning(String algorithm, PrivateKey signingKey)
+      throws InvalidKeyException {
+    ThreadLocalSignature signatures = new ThreadLocalSignature(algorithm, null, signingKey);
+    signatures.set(signatures.newSignature());
+    return signatures;
+  }
+
+  /**
+   * Verifies a signature with the calling thread's instance. Signatures of the wrong
+   * length are rejected up front, without handing them to the provider, which may
+   * report them with an exception.
+   * @return true if the signature matches, false otherwise.
+   */
+  boolean verify(byte[] source, byte[] signature) {
+    if (signature == null || (signatureLength >= 0 && signature.length != signatureLength)) {
+      return false;
+    }
+    Signature verifier = get();
+    try {
+      verifier.update(source);
+      return verifier.verify(signature);
+    } catch (SignatureException e) {
+      // don't reuse an instance that failed half-way through
+      remove();
+      return false;
+    }
+  }
+
+  @Override
+  protected Signature initialValue() {
+    try {
+      return newSignature();
+    } catch (InvalidKeyException e) {
+      throw new IllegalStateException("key somehow became invalid since calling the constructor", e);
+    }
+  }
+
+  private Signature newSignature() throws InvalidKeyException {
+    Signature signature;
+    try {
+      signature = Signature.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("platform is missing " + algorithm + " signature alg", e);
+    }
+    if (signingKey != null) {
+      signature.initSign(signingKey);
+    } else {
+      signature.initVerify(verificationKey);
+    }
+    return signature;
+  }
+}
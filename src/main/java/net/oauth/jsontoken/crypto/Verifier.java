@@ -31,4 +31,21 @@ public interface Verifier {
    */
   public void verifySignature(byte[] source, byte[] signature) throws SignatureException;
 
+  /**
+   * Verifies a signature on an array of bytes, reporting a mismatch through the return
+   * value. Implementations should override this to avoid constructing an exception for
+   * every rejected signature.
+   * @param source The bytes that were signed.
+   * @param signature The signature on the bytes.
+   * @return true if the signature matches, false if it doesn't or some other error occurred.
+   */
+  public default boolean verify(byte[] source, byte[] signature) {
+    try {
+      verifySignature(source, signature);
+      return true;
+    } catch (SignatureException e) {
+      return false;
+    }
+  }
+
 }
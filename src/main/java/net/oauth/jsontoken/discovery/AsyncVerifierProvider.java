@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.crypto.Verifier;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link VerifierProvider}, used by
+ * {@link JsonTokenParser#verifyAndDeserializeAsync(String)}. Implementations must
+ * not do I/O on the calling thread; the returned future completes once the
+ * verification keys are available.
+ */
+public interface AsyncVerifierProvider {
+
+  /**
+   * Returns a future of the {@link Verifier}s for a certain verification key,
+   * given the key's id and its issuer.
+   * @param issuer the id of the issuer that's using the key.
+   * @param keyId the id of the key, if keyId mismatches, the future yields a list of
+   * possible verification keys.
+   * @return a future of the verifiers, completing with null if there are none.
+   */
+  public CompletableFuture<List<Verifier>> findVerifier(String issuer, String keyId);
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.crypto.Verifier;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncVerifierProvider} that runs a blocking {@link VerifierProvider}
+ * on an {@link Executor}, so that key fetches never run on the caller's thread.
+ * Concurrent requests for the same issuer and key id share one in-flight lookup.
+ */
+public class AsyncVerifierProviderAdapter implements AsyncVerifierProvider {
+
+  private final VerifierProvider provider;
+  private final Executor executor;
+  private final ConcurrentMap<LookupKey, CompletableFuture<List<Verifier>>> inFlight =
+      new ConcurrentHashMap<LookupKey, CompletableFuture<List<Verifier>>>();
+
+  /**
+   * Creates an adapter that runs lookups on a shared pool of daemon threads.
+   * @param provider the blocking provider to adapt.
+   */
+  public AsyncVerifierProviderAdapter(VerifierProvider provider) {
+    this(provider, DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Public constructor.
+   * @param provider the blocking provider to adapt.
+   * @param executor runs the blocking lookups. Must not run tasks on the submitting thread.
+   */
+  public AsyncVerifierProviderAdapter(VerifierProvider provider, Executor executor) {
+    this.provider = JsonTokenUtil.checkNotNull(provider);
+    this.executor = JsonTokenUtil.checkNotNull(executor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.discovery.AsyncVerifierProvider#findVerifier(java.lang.String, java.lang.String)
+   */
+  @Override
+  public CompletableFuture<List<Verifier>> findVerifier(final String issuer, final String keyId) {
+    final LookupKey key = new LookupKey(issuer, keyId);
+    CompletableFuture<List<Verifier>> lookup = inFlight.get(key);
+    if (lookup == null) {
+      final CompletableFuture<List<Verifier>> created = new CompletableFuture<List<Verifier>>();
+      lookup = inFlight.putIfAbsent(key, created);
+      if (lookup == null) {
+        lookup = created;
+        try {
+          executor.execute(() -> {
+            try {
+              created.complete(provider.findVerifier(issuer, keyId));
+            } catch (Throwable t) {
+              created.completeExceptionally(t);
+            } finally {
+              inFlight.remove(key, created);
+            }
+          });
+        } catch (RuntimeException e) {
+          inFlight.remove(key, created);
+          created.completeExceptionally(e);
+        }
+      }
+    }
+    // hand out a dependent future, so that one caller cancelling it does not affect the others
+    return lookup.thenApply(verifiers -> verifiers);
+  }
+
+  private static final class LookupKey {
+    final String issuer;
+    final String keyId;
+
+    LookupKey(String issuer, String keyId) {
+      this.issuer = issuer;
+      this.keyId = keyId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof LookupKey)) {
+        return false;
+      }
+      LookupKey other = (LookupKey) o;
+      return JsonTokenUtil.equal(issuer, other.issuer) && JsonTokenUtil.equal(keyId, other.keyId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (issuer == null ? 0 : issuer.hashCode()) + (keyId == null ? 0 : keyId.hashCode());
+    }
+  }
+
+  /**
+   * Lazily created pool of daemon threads for blocking lookups.
+   */
+  private static final class DefaultExecutor {
+    static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "jsontoken-key-lookup-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+}
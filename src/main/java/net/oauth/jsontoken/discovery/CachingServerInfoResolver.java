@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.Clock;
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.SystemClock;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ServerInfoResolver} that keeps the server info documents resolved by
+ * another resolver, one per server descriptor, for a fixed time to live.
+ *
+ * <ul>
+ * <li>Concurrent lookups of the same descriptor share a single resolution.</li>
+ * <li>A null result is not cached.</li>
+ * <li>If resolving an expired document fails or returns null, the expired
+ * document is served, without trying again, for a retry interval.</li>
+ * </ul>
+ *
+ * Since the same {@link ServerInfo} is returned until it expires, a
+ * {@link JsonServerInfo} parses each of its keys only once.
+ */
+public class CachingServerInfoResolver implements ServerInfoResolver {
+
+  public static final long DEFAULT_TTL_IN_SECONDS = 3600;
+  public static final long DEFAULT_RETRY_INTERVAL_IN_SECONDS = 30;
+
+  private final ServerInfoResolver resolver;
+  private final Clock clock;
+  private final long ttlMillis;
+  private long retryIntervalMillis = DEFAULT_RETRY_INTERVAL_IN_SECONDS * 1000;
+  private final ConcurrentMap<URI, Entry> entries = new ConcurrentHashMap<URI, Entry>();
+  private final ConcurrentMap<URI, CompletableFuture<Entry>> inFlight =
+      new ConcurrentHashMap<URI, CompletableFuture<Entry>>();
+
+  /**
+   * Creates a resolver that keeps documents for {@link #DEFAULT_TTL_IN_SECONDS}.
+   * @param resolver fetches and parses the documents.
+   */
+  public CachingServerInfoResolver(ServerInfoResolver resolver) {
+    this(resolver, new SystemClock(), DEFAULT_TTL_IN_SECONDS);
+  }
+
+  /**
+   * Public constructor.
+   * @param resolver fetches and parses the documents.
+   * @param clock decides when a cached document expires.
+   * @param ttlInSeconds how long a document is kept.
+   */
+  public CachingServerInfoResolver(ServerInfoResolver resolver, Clock clock, long ttlInSeconds) {
+    if (ttlInSeconds < 0) {
+      throw new IllegalArgumentException("ttlInSeconds must not be negative");
+    }
+    this.resolver = JsonTokenUtil.checkNotNull(resolver);
+    this.clock = JsonTokenUtil.checkNotNull(clock);
+    this.ttlMillis = ttlInSeconds * 1000;
+  }
+
+  /**
+   * Sets how long an expired document is served before resolving it is retried,
+   * after resolving it failed. Call before first use.
+   */
+  public void setRetryIntervalInSeconds(long seconds) {
+    if (seconds < 0) {
+      throw new IllegalArgumentException("seconds must not be negative");
+    }
+    this.retryIntervalMillis = seconds * 1000;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.discovery.ServerInfoResolver#resolve(java.net.URI)
+   */
+  @Override
+  public ServerInfo resolve(URI serverDescriptor) {
+    Entry current = entries.get(serverDescriptor);
+    if (current != null && clock.currentTimeMillis() < current.expiresAt) {
+      return current.serverInfo;
+    }
+    CompletableFuture<Entry> created = new CompletableFuture<Entry>();
+    CompletableFuture<Entry> running = inFlight.putIfAbsent(serverDescriptor, created);
+    if (running == null) {
+      running = created;
+      load(serverDescriptor, created);
+    }
+    Entry loaded;
+    try {
+      loaded = running.join();
+    } catch (CompletionException e) {
+      if (current != null) {
+        return current.serverInfo;
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+    if (loaded != null) {
+      return loaded.serverInfo;
+    }
+    return current == null ? null : current.serverInfo;
+  }
+
+  /**
+   * Drops the cached document of a server descriptor, so that the next lookup
+   * resolves it again.
+   */
+  public void invalidate(URI serverDescriptor) {
+    entries.remove(serverDescriptor);
+  }
+
+  /**
+   * Drops all cached documents.
+   */
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  private void load(URI serverDescriptor, CompletableFuture<Entry> result) {
+    try {
+      ServerInfo serverInfo = resolver.resolve(serverDescriptor);
+      Entry loaded = null;
+      if (serverInfo != null) {
+        loaded = new Entry(serverInfo, clock.currentTimeMillis() + ttlMillis);
+        entries.put(serverDescriptor, loaded);
+      } else {
+        backOff(serverDescriptor);
+      }
+      result.complete(loaded);
+    } catch (Throwable t) {
+      backOff(serverDescriptor);
+      result.completeExceptionally(t);
+    } finally {
+      inFlight.remove(serverDescriptor, result);
+    }
+  }
+
+  /**
+   * Keeps serving the expired document, if any, for the retry interval.
+   */
+  private void backOff(URI serverDescriptor) {
+    Entry current = entries.get(serverDescriptor);
+    if (current != null) {
+      entries.replace(serverDescriptor, current,
+          new Entry(current.serverInfo, clock.currentTimeMillis() + retryIntervalMillis));
+    }
+  }
+
+  private static final class Entry {
+    final ServerInfo serverInfo;
+    final long expiresAt;
+
+    Entry(ServerInfo serverInfo, long expiresAt) {
+      this.serverInfo = serverInfo;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
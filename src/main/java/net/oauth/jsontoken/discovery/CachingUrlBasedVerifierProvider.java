@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.Clock;
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.SystemClock;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.metrics.TokenMetrics;
+
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link UrlBasedVerifierProvider} that keeps the downloaded certificates.
+ *
+ * <ul>
+ * <li>The document is cached for as long as its Cache-Control max-age or Expires
+ * header allows, clamped to a minimum and maximum lifetime; responses without
+ * caching headers are kept for a default lifetime.</li>
+ * <li>Once most of that lifetime has passed, the next lookup starts a refresh in
+ * the background and keeps returning the cached certificates meanwhile.</li>
+ * <li>Lookups after expiry wait for the refresh. If it fails, the expired
+ * certificates are served and the download is retried after a retry interval.</li>
+ * <li>If the first download fails, lookups return null without waiting until
+ * the retry interval has passed.</li>
+ * <li>Concurrent lookups share a single download.</li>
+ * </ul>
+ *
+ * Like {@link UrlBasedVerifierProvider}, lookups return the certificate matching
+ * the key id if there is one. Only lookups before the first successful download
+ * return null.
+ */
+public class CachingUrlBasedVerifierProvider implements VerifierProvider {
+
+  public static final long DEFAULT_TTL_IN_SECONDS = 3600;
+  public static final long DEFAULT_MINIMUM_TTL_IN_SECONDS = 60;
+  public static final long DEFAULT_MAXIMUM_TTL_IN_SECONDS = 24 * 3600;
+  public static final long DEFAULT_RETRY_INTERVAL_IN_SECONDS = 30;
+
+  /** Fraction of the lifetime after which a background refresh is started. */
+  private static final double REFRESH_FRACTION = 0.8;
+
+  private final String publicCertUrl;
+  private final Clock clock;
+  private final Executor executor;
+  private final AtomicReference<CompletableFuture<Snapshot>> inFlight =
+      new AtomicReference<CompletableFuture<Snapshot>>();
+  private volatile Snapshot snapshot;
+  // while there is no snapshot, the time before which a failed download isn't retried
+  private volatile long retryAt;
+
+  private long defaultTtlMillis = DEFAULT_TTL_IN_SECONDS * 1000;
+  private long minimumTtlMillis = DEFAULT_MINIMUM_TTL_IN_SECONDS * 1000;
+  private long maximumTtlMillis = DEFAULT_MAXIMUM_TTL_IN_SECONDS * 1000;
+  private long retryIntervalMillis = DEFAULT_RETRY_INTERVAL_IN_SECONDS * 1000;
+  private int timeoutMillis = UrlBasedVerifierProvider.DEFAULT_TIMEOUT_IN_MILLIS;
+  private TokenMetrics metrics = TokenMetrics.NOOP;
+
+  /**
+   * Creates a provider that refreshes on a shared pool of daemon threads.
+   * @param publicCertUrl the URL of the certificate document.
+   */
+  public CachingUrlBasedVerifierProvider(String publicCertUrl) {
+    this(publicCertUrl, new SystemClock(), DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Public constructor.
+   * @param publicCertUrl the URL of the certificate document.
+   * @param clock decides when the cached document is due for refresh and expires.
+   * @param executor runs the downloads.
+   */
+  public CachingUrlBasedVerifierProvider(String publicCertUrl, Clock clock, Executor executor) {
+    this.publicCertUrl = JsonTokenUtil.checkNotNull(publicCertUrl);
+    this.clock = JsonTokenUtil.checkNotNull(clock);
+    this.executor = JsonTokenUtil.checkNotNull(executor);
+  }
+
+  /**
+   * Sets the lifetime of documents served without caching headers. Call before first use.
+   */
+  public void setDefaultTtlInSeconds(long seconds) {
+    this.defaultTtlMillis = seconds * 1000;
+  }
+
+  /**
+   * Sets the bounds that the server's caching headers are clamped to. Call before first use.
+   */
+  public void setTtlBoundsInSeconds(long minimumSeconds, long maximumSeconds) {
+    if (minimumSeconds < 0 || maximumSeconds < minimumSeconds) {
+      throw new IllegalArgumentException("invalid ttl bounds " + minimumSeconds + ".." + maximumSeconds);
+    }
+    this.minimumTtlMillis = minimumSeconds * 1000;
+    this.maximumTtlMillis = maximumSeconds * 1000;
+  }
+
+  /**
+   * Sets how long to wait before retrying a failed download. Call before first use.
+   */
+  public void setRetryIntervalInSeconds(long seconds) {
+    this.retryIntervalMillis = seconds * 1000;
+  }
+
+  /**
+   * Sets the connect and read timeout of downloads. Call before first use.
+   */
+  public void setTimeoutInMillis(int timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Sets the metrics that downloads are reported to. Call before first use.
+   */
+  public void setMetrics(TokenMetrics metrics) {
+    this.metrics = JsonTokenUtil.checkNotNull(metrics);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.discovery.VerifierProvider#findVerifier(java.lang.String, java.lang.String)
+   */
+  @Override
+  public List<Verifier> findVerifier(String issuer, String keyId) {
+    return find(SignatureAlgorithm.RS256, keyId);
+  }
+
+  /**
+   * Returns a view of this provider that only finds keys suited to the given
+   * algorithm, for registering with {@link VerifierProviders}. All views share
+   * this provider's cached document.
+   */
+  public VerifierProvider forAlgorithm(final SignatureAlgorithm sigAlg) {
+    JsonTokenUtil.checkNotNull(sigAlg);
+    return (issuer, keyId) -> find(sigAlg, keyId);
+  }
+
+  private List<Verifier> find(SignatureAlgorithm sigAlg, String keyId) {
+    Snapshot current = snapshot;
+    long now = clock.now().toEpochMilli();
+    if (current == null) {
+      if (now < retryAt) {
+        return null;
+      }
+      Snapshot loaded = refresh().join();
+      return loaded == null ? null : loaded.document.getVerifiers(sigAlg).find(keyId);
+    }
+    if (now < current.refreshAt) {
+      return current.document.getVerifiers(sigAlg).find(keyId);
+    }
+    if (now < current.expiresAt) {
+      refresh();
+      return current.document.getVerifiers(sigAlg).find(keyId);
+    }
+    Snapshot loaded = refresh().join();
+    return (loaded == null ? current : loaded).document.getVerifiers(sigAlg).find(keyId);
+  }
+
+  /**
+   * Drops the cached certificates, so that the next lookup downloads them again.
+   */
+  public void invalidate() {
+    snapshot = null;
+    retryAt = 0;
+  }
+
+  /**
+   * Starts a download unless one is already running, and returns the future of the
+   * running download. The future completes with null if the download fails.
+   */
+  private CompletableFuture<Snapshot> refresh() {
+    while (true) {
+      CompletableFuture<Snapshot> running = inFlight.get();
+      if (running != null) {
+        return running;
+      }
+      final CompletableFuture<Snapshot> created = new CompletableFuture<Snapshot>();
+      if (inFlight.compareAndSet(null, created)) {
+        try {
+          executor.execute(() -> load(created));
+        } catch (RuntimeException e) {
+          inFlight.compareAndSet(created, null);
+          created.complete(null);
+        }
+        return created;
+      }
+    }
+  }
+
+  private void load(CompletableFuture<Snapshot> result) {
+    Snapshot loaded = null;
+    long start = System.nanoTime();
+    try {
+      long now = clock.now().toEpochMilli();
+      CertificateDocument document = CertificateDocument.fetch(publicCertUrl, timeoutMillis, now);
+      long ttl = document.getMaxAgeMillis() == CertificateDocument.UNKNOWN_MAX_AGE
+          ? defaultTtlMillis
+          : Math.min(maximumTtlMillis, Math.max(minimumTtlMillis, document.getMaxAgeMillis()));
+      loaded = new Snapshot(document, now + (long) (ttl * REFRESH_FRACTION), now + ttl);
+      snapshot = loaded;
+    } catch (IOException e) {
+      backOff();
+    } catch (CertificateException e) {
+      backOff();
+    } catch (RuntimeException e) {
+      backOff();
+    } finally {
+      metrics.recordKeyFetch(loaded != null, System.nanoTime() - start);
+      // clear before completing, so that callers woken by the result can start the next refresh
+      inFlight.compareAndSet(result, null);
+      result.complete(loaded);
+    }
+  }
+
+  /**
+   * Keeps serving the current certificates, if any, and postpones the next attempt
+   * by the retry interval.
+   */
+  private void backOff() {
+    long retryAt = clock.now().toEpochMilli() + retryIntervalMillis;
+    Snapshot current = snapshot;
+    if (current != null) {
+      snapshot = new Snapshot(current.document, retryAt, Math.max(current.expiresAt, retryAt));
+    } else {
+      this.retryAt = retryAt;
+    }
+  }
+
+  private static final class Snapshot {
+    final CertificateDocument document;
+    final long refreshAt;
+    final long expiresAt;
+
+    Snapshot(CertificateDocument document, long refreshAt, long expiresAt) {
+      this.document = document;
+      this.refreshAt = refreshAt;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Lazily created pool of daemon threads for downloads.
+   */
+  private static final class DefaultExecutor {
+    static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "jsontoken-cert-refresh-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.oauth.jsontoken.crypto.EcdsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.Ed25519Verifier;
+import net.oauth.jsontoken.crypto.RsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A certificate document fetched from a URL, in the format expected by
+ * {@link UrlBasedVerifierProvider}, together with how long the server allows
+ * it to be cached.
+ */
+final class CertificateDocument {
+
+  /** Returned by {@link #getMaxAgeMillis()} when the response carries no caching headers. */
+  static final long UNKNOWN_MAX_AGE = -1;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE =
+      new TypeReference<LinkedHashMap<String, Object>>() {};
+
+  private static final VerifierIndex EMPTY = new VerifierIndex.Builder().build();
+
+  private final Map<SignatureAlgorithm, VerifierIndex> verifiers;
+  private final long maxAgeMillis;
+
+  private CertificateDocument(Map<SignatureAlgorithm, VerifierIndex> verifiers, long maxAgeMillis) {
+    this.verifiers = verifiers;
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  /**
+   * Returns one verifier per certificate in the document whose key suits the
+   * algorithm, indexed by the key id the document lists it under and by the
+   * certificate's thumbprints.
+   */
+  VerifierIndex getVerifiers(SignatureAlgorithm sigAlg) {
+    VerifierIndex index = verifiers.get(sigAlg);
+    return index == null ? EMPTY : index;
+  }
+
+  /**
+   * Returns how long the document may be cached, or {@link #UNKNOWN_MAX_AGE} if
+   * the server did not say. Zero means the document must not be cached.
+   */
+  long getMaxAgeMillis() {
+    return maxAgeMillis;
+  }
+
+  /**
+   * Downloads and parses the certificate document.
+   * @param publicCertUrl the URL of the document.
+   * @param timeoutMillis connect and read timeout, zero for none.
+   * @param nowMillis current time, used when the server sends Expires but no Date.
+   * @return the parsed document.
+   * @throws IOException if the document cannot be fetched, the server does not answer
+   *   with 200 OK, or the document is not a JSON object.
+   * @throws CertificateException if one of the certificates cannot be parsed.
+   */
+  static CertificateDocument fetch(String publicCertUrl, int timeoutMillis, long nowMillis)
+      throws IOException, CertificateException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(publicCertUrl).openConnection();
+    try {
+      connection.setRequestMethod("GET");
+      connection.setConnectTimeout(timeoutMillis);
+      connection.setReadTimeout(timeoutMillis);
+      int status = connection.getResponseCode();
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Fetching " + publicCertUrl + " returned HTTP " + status);
+      }
+      Map<SignatureAlgorithm, VerifierIndex> verifiers;
+      InputStream in = connection.getInputStream();
+      try {
+        verifiers = parse(in);
+      } finally {
+        in.close();
+      }
+      return new CertificateDocument(verifiers, maxAgeMillis(connection, nowMillis));
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Parses a document of the form {"keyid":"x509 certificate in Pem format", ...}
+   * into verifiers grouped by the algorithm that suits their key.
+   */
+  static Map<SignatureAlgorithm, VerifierIndex> parse(InputStream in)
+      throws IOException, CertificateException {
+    Map<String, Object> jsonMap = MAPPER.readValue(in, MAP_TYPE);
+    // the X.509 factory reads PEM directly; one instance serves the whole document
+    CertificateFactory factory = CertificateFactory.getInstance("X509");
+    Map<SignatureAlgorithm, VerifierIndex.Builder> builders =
+        new EnumMap<SignatureAlgorithm, VerifierIndex.Builder>(SignatureAlgorithm.class);
+    for (Map.Entry<String, Object> cert : jsonMap.entrySet()) {
+      if (!(cert.getValue() instanceof String)) {
+        throw new CertificateException("Certificate " + cert.getKey() + " is not a PEM string");
+      }
+      byte[] pem = ((String) cert.getValue()).getBytes(StandardCharsets.US_ASCII);
+      X509Certificate x509Cert =
+          (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(pem));
+      PublicKey key = x509Cert.getPublicKey();
+      VerifierIndex.Builder verifiers = builders.get(algorithmFor(key));
+      if (verifiers == null) {
+        verifiers = new VerifierIndex.Builder();
+        builders.put(algorithmFor(key), verifiers);
+      }
+      verifiers.add(verifierFor(key), cert.getKey(), x509Cert);
+    }
+    Map<SignatureAlgorithm, VerifierIndex> verifiers =
+        new EnumMap<SignatureAlgorithm, VerifierIndex>(SignatureAlgorithm.class);
+    for (Map.Entry<SignatureAlgorithm, VerifierIndex.Builder> entry : builders.entrySet()) {
+      verifiers.put(entry.getKey(), entry.getValue().build());
+    }
+    return verifiers;
+  }
+
+  /**
+   * Returns the signature algorithm for a key type: ES256 for EC keys, EdDSA
+   * for Ed25519 keys and RS256 for everything else.
+   */
+  static SignatureAlgorithm algorithmFor(PublicKey key) {
+    String algorithm = key.getAlgorithm();
+    if ("EC".equals(algorithm)) {
+      return SignatureAlgorithm.ES256;
+    }
+    if ("Ed25519".equals(algorithm) || "EdDSA".equals(algorithm)) {
+      return SignatureAlgorithm.EdDSA;
+    }
+    return SignatureAlgorithm.RS256;
+  }
+
+  /**
+   * Returns a verifier for the key, using the algorithm {@link #algorithmFor} picks.
+   */
+  static Verifier verifierFor(PublicKey key) {
+    switch (algorithmFor(key)) {
+      case ES256:
+        return new EcdsaSHA256Verifier(key);
+      case EdDSA:
+        return new Ed25519Verifier(key);
+      default:
+        return new RsaSHA256Verifier(key);
+    }
+  }
+
+  /**
+   * Works out the freshness lifetime of a response from its Cache-Control,
+   * Expires, Date and Age headers, in that order of precedence.
+   */
+  static long maxAgeMillis(HttpURLConnection connection, long nowMillis) {
+    long age = 1000L * parseSeconds(connection.getHeaderField("Age"), 0);
+    String cacheControl = connection.getHeaderField("Cache-Control");
+    if (cacheControl != null) {
+      for (String directive : cacheControl.split(",")) {
+        directive = directive.trim().toLowerCase(Locale.ROOT);
+        if (directive.equals("no-cache") || directive.equals("no-store")) {
+          return 0;
+        }
+        if (directive.startsWith("max-age=")) {
+          long maxAge = parseSeconds(directive.substring("max-age=".length()), -1);
+          if (maxAge >= 0) {
+            return Math.max(0, 1000L * maxAge - age);
+          }
+        }
+      }
+    }
+    if (connection.getHeaderField("Expires") != null) {
+      // an unparseable Expires means already expired
+      long expires = connection.getHeaderFieldDate("Expires", 0);
+      long date = connection.getHeaderFieldDate("Date", nowMillis);
+      return Math.max(0, expires - date - age);
+    }
+    return UNKNOWN_MAX_AGE;
+  }
+
+  private static long parseSeconds(String value, long defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim().replace("\"", ""));
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
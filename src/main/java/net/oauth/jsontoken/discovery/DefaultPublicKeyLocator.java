@@ -16,11 +16,10 @@
  */
 package net.oauth.jsontoken.discovery;
 
-import net.oauth.jsontoken.crypto.RsaSHA256Verifier;
 import net.oauth.jsontoken.crypto.Verifier;
 
 import java.net.URI;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -32,6 +31,9 @@ import java.util.List;
  * an issuer id to a server descriptor, and then fetching the ServerInfo document from
  * the server descriptor URL. Finally, the key is looked up int the ServerInfo document
  * by key id.
+ *
+ * Wrap the resolver in a {@link CachingServerInfoResolver} to avoid fetching
+ * the document for every token.
  */
 public class DefaultPublicKeyLocator implements VerifierProvider {
 
@@ -59,10 +61,8 @@ public class DefaultPublicKeyLocator implements VerifierProvider {
   @Override
   public List<Verifier> findVerifier(String issuer, String keyId) {
     URI serverDescriptor = descriptorProvider.getServerDescriptor(issuer);
-    Verifier rsaVerifier = 
-      new RsaSHA256Verifier(descriptorResolver.resolve(serverDescriptor).getVerificationKey(keyId));
-    List<Verifier> list = new ArrayList<Verifier>();
-    list.add(rsaVerifier);
-    return list;
+    ServerInfo serverInfo = descriptorResolver.resolve(serverDescriptor);
+    Verifier verifier = serverInfo == null ? null : serverInfo.getVerifier(keyId);
+    return verifier == null ? null : Collections.singletonList(verifier);
   }
 }
@@ -0,0 +1,503 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.crypto.MagicRsaPublicKey;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link VerifierProvider} that reads verification keys from a local file or
+ * from the files of a directory, for deployments that can't fetch keys over HTTP.
+ *
+ * <ul>
+ * <li>{@code .json} files hold a JWK set ({"keys": [...]}), a server info document
+ * with magic keys ({"verification_keys": {"kid": "RSA.modulus.exponent"}}), or a
+ * certificate document ({"kid": "PEM certificate", ...}). A top-level "issuer"
+ * member binds the file's keys to that issuer.</li>
+ * <li>{@code .pem}, {@code .crt} and {@code .cer} files hold PEM certificates,
+ * found under the file name without its extension as key id.</li>
+ * </ul>
+ *
+ * Certificates can also be found by their thumbprints. RSA, P-256 EC and Ed25519
+ * keys are supported; other JWKs and keys marked for encryption are skipped. Keys
+ * without an issuer are returned for issuers that no file names.
+ *
+ * The files are parsed in parallel into an immutable snapshot, which replaces
+ * the previous one in a single write; lookups never wait for a reload. When
+ * watching, a daemon thread reloads whenever a {@link WatchService} reports any
+ * change in the directory. If a reload fails, for example because a file is half
+ * written, the previous snapshot stays in place until the next change.
+ *
+ * A token's verifiers are tried in turn, so if the files hold keys of several
+ * types, register {@link #forAlgorithm} views with {@link VerifierProviders}
+ * so that each algorithm only sees its own keys.
+ */
+public class FileBasedVerifierProvider implements VerifierProvider, Closeable {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  // DER prefix of an X.509 SubjectPublicKeyInfo holding a raw 32-byte Ed25519 key
+  private static final byte[] ED25519_SPKI_PREFIX = {
+      0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+  /** How long the watcher waits for more events before reloading. */
+  private static final long SETTLE_MILLIS = 50;
+
+  private final Path path;
+  private final Executor executor;
+  private final WatchService watcher;
+  private final AtomicLong reloadCount = new AtomicLong();
+  private final AtomicLong reloadFailureCount = new AtomicLong();
+  private volatile Snapshot snapshot;
+
+  /**
+   * Loads the keys on the common {@link ForkJoinPool} and watches for changes.
+   * @param path a key file, or a directory of key files.
+   * @throws IOException if the keys can't be read or parsed.
+   */
+  public FileBasedVerifierProvider(Path path) throws IOException {
+    this(path, ForkJoinPool.commonPool(), true);
+  }
+
+  /**
+   * Public constructor.
+   * @param path a key file, or a directory of key files.
+   * @param executor parses the files.
+   * @param watch whether to reload when the files change.
+   * @throws IOException if the keys can't be read or parsed.
+   */
+  public FileBasedVerifierProvider(Path path, Executor executor, boolean watch)
+      throws IOException {
+    this.path = JsonTokenUtil.checkNotNull(path).toAbsolutePath();
+    this.executor = JsonTokenUtil.checkNotNull(executor);
+    this.snapshot = load();
+    if (watch) {
+      Path directory = Files.isDirectory(this.path) ? this.path : this.path.getParent();
+      watcher = directory.getFileSystem().newWatchService();
+      directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+      Thread thread = new Thread(this::watch, "jsontoken-key-watcher");
+      thread.setDaemon(true);
+      thread.start();
+    } else {
+      watcher = null;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.discovery.VerifierProvider#findVerifier(java.lang.String, java.lang.String)
+   */
+  @Override
+  public List<Verifier> findVerifier(String issuer, String keyId) {
+    return snapshot.find(issuer, keyId, null);
+  }
+
+  /**
+   * Returns a view of this provider that only finds keys for the given algorithm.
+   */
+  public VerifierProvider forAlgorithm(final SignatureAlgorithm sigAlg) {
+    JsonTokenUtil.checkNotNull(sigAlg);
+    return (issuer, keyId) -> snapshot.find(issuer, keyId, sigAlg);
+  }
+
+  /**
+   * Reads the files again and swaps in the new keys. Concurrent reloads run one
+   * at a time, so the last one to finish has read the newest files.
+   * @throws IOException if the keys can't be read or parsed, in which case the
+   *   previous keys are kept.
+   */
+  public synchronized void reload() throws IOException {
+    snapshot = load();
+    reloadCount.incrementAndGet();
+  }
+
+  /**
+   * Returns how many reloads replaced the keys.
+   */
+  public long getReloadCount() {
+    return reloadCount.get();
+  }
+
+  /**
+   * Returns how many reloads triggered by file changes failed.
+   */
+  public long getReloadFailureCount() {
+    return reloadFailureCount.get();
+  }
+
+  /**
+   * Stops watching for changes. The loaded keys remain available.
+   */
+  @Override
+  public void close() throws IOException {
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watcher.take();
+        boolean changed = hasEvents(key);
+        // let a burst of events, such as a file being written, settle first
+        while ((key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= hasEvents(key);
+        }
+        if (changed) {
+          try {
+            reload();
+          } catch (IOException | RuntimeException e) {
+            reloadFailureCount.incrementAndGet();
+          }
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // closed
+    }
+  }
+
+  // Any event counts, not just those naming a key file: mounted secrets and
+  // config maps swap their files in by re-pointing a hidden ..data symlink.
+  private static boolean hasEvents(WatchKey key) {
+    boolean events = !key.pollEvents().isEmpty();
+    key.reset();
+    return events;
+  }
+
+  private static boolean isKeyFile(Path file) {
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    return !name.startsWith(".") && (name.endsWith(".json") || name.endsWith(".pem")
+        || name.endsWith(".crt") || name.endsWith(".cer"));
+  }
+
+  private Snapshot load() throws IOException {
+    List<Path> files = new ArrayList<Path>();
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+        for (Path file : entries) {
+          if (isKeyFile(file) && Files.isRegularFile(file)) {
+            files.add(file);
+          }
+        }
+      }
+      Collections.sort(files);
+    } else {
+      files.add(path);
+    }
+
+    List<CompletableFuture<List<Key>>> parsed = new ArrayList<CompletableFuture<List<Key>>>();
+    for (final Path file : files) {
+      parsed.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return parse(file);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }, executor));
+    }
+    Snapshot.Builder builder = new Snapshot.Builder();
+    try {
+      for (CompletableFuture<List<Key>> keys : parsed) {
+        builder.addAll(keys.join());
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().getMessage(), e.getCause());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Parses one key file.
+   * @throws IOException if the file can't be read or holds a malformed key.
+   */
+  private static List<Key> parse(Path file) throws IOException {
+    byte[] content = Files.readAllBytes(file);
+    String name = file.getFileName().toString();
+    try {
+      if (!name.toLowerCase(Locale.ROOT).endsWith(".json")) {
+        int dot = name.lastIndexOf('.');
+        return parseCertificates(null, dot > 0 ? name.substring(0, dot) : name,
+            new ByteArrayInputStream(content));
+      }
+      JsonNode document = MAPPER.readTree(content);
+      if (document == null || !document.isObject()) {
+        throw new IOException("not a JSON object");
+      }
+      String issuer = document.path("issuer").isTextual() ? document.get("issuer").asText() : null;
+      if (document.path("keys").isArray()) {
+        return parseJwks(issuer, document.get("keys"));
+      }
+      List<Key> keys = new ArrayList<Key>();
+      if (document.path("verification_keys").isObject()) {
+        Iterator<Map.Entry<String, JsonNode>> magicKeys = document.get("verification_keys").fields();
+        while (magicKeys.hasNext()) {
+          Map.Entry<String, JsonNode> magicKey = magicKeys.next();
+          keys.add(new Key(issuer, new MagicRsaPublicKey(magicKey.getValue().asText()).getKey(),
+              magicKey.getKey()));
+        }
+        return keys;
+      }
+      Iterator<Map.Entry<String, JsonNode>> certificates = document.fields();
+      while (certificates.hasNext()) {
+        Map.Entry<String, JsonNode> certificate = certificates.next();
+        if (!"issuer".equals(certificate.getKey())) {
+          byte[] pem = certificate.getValue().asText().getBytes(StandardCharsets.US_ASCII);
+          keys.addAll(parseCertificates(issuer, certificate.getKey(), new ByteArrayInputStream(pem)));
+        }
+      }
+      return keys;
+    } catch (GeneralSecurityException | IOException | RuntimeException e) {
+      throw new IOException("Invalid key file " + file + ": " + e.getMessage(), e);
+    }
+  }
+
+  private static List<Key> parseCertificates(String issuer, String keyId, InputStream in)
+      throws GeneralSecurityException {
+    List<Key> keys = new ArrayList<Key>();
+    for (Certificate certificate : CertificateFactory.getInstance("X509").generateCertificates(in)) {
+      keys.add(certificateKey(issuer, keyId, (X509Certificate) certificate));
+    }
+    if (keys.isEmpty()) {
+      throw new GeneralSecurityException("no certificate found");
+    }
+    return keys;
+  }
+
+  private static Key certificateKey(String issuer, String keyId, X509Certificate certificate)
+      throws GeneralSecurityException {
+    String[] thumbprints = VerifierIndex.thumbprints(certificate);
+    return new Key(issuer, certificate.getPublicKey(), keyId, thumbprints[0], thumbprints[1]);
+  }
+
+  private static List<Key> parseJwks(String issuer, JsonNode jwks) throws GeneralSecurityException {
+    List<Key> keys = new ArrayList<Key>();
+    for (JsonNode jwk : jwks) {
+      if ("enc".equals(jwk.path("use").asText())) {
+        continue;
+      }
+      String keyId = jwk.path("kid").isTextual() ? jwk.get("kid").asText() : null;
+      if (jwk.path("x5c").isArray() && jwk.get("x5c").size() > 0) {
+        byte[] der = Base64.decodeBase64(jwk.get("x5c").get(0).asText());
+        X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X509")
+            .generateCertificate(new ByteArrayInputStream(der));
+        keys.add(certificateKey(issuer, keyId, certificate));
+        continue;
+      }
+      PublicKey key = jwkKey(jwk);
+      if (key != null) {
+        keys.add(new Key(issuer, key, keyId));
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the public key of a JWK, or null if its type or curve isn't supported.
+   */
+  private static PublicKey jwkKey(JsonNode jwk) throws GeneralSecurityException {
+    String kty = jwk.path("kty").asText();
+    String crv = jwk.path("crv").asText();
+    if ("RSA".equals(kty)) {
+      return KeyFactory.getInstance("RSA").generatePublic(
+          new RSAPublicKeySpec(unsigned(jwk, "n"), unsigned(jwk, "e")));
+    }
+    if ("EC".equals(kty) && "P-256".equals(crv)) {
+      AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+      parameters.init(new ECGenParameterSpec("secp256r1"));
+      ECPoint point = new ECPoint(unsigned(jwk, "x"), unsigned(jwk, "y"));
+      return KeyFactory.getInstance("EC").generatePublic(
+          new ECPublicKeySpec(point, parameters.getParameterSpec(ECParameterSpec.class)));
+    }
+    if ("OKP".equals(kty) && "Ed25519".equals(crv)) {
+      byte[] x = decode(jwk, "x");
+      if (x.length != 32) {
+        throw new GeneralSecurityException("Ed25519 key must be 32 bytes");
+      }
+      byte[] spki = new byte[ED25519_SPKI_PREFIX.length + x.length];
+      System.arraycopy(ED25519_SPKI_PREFIX, 0, spki, 0, ED25519_SPKI_PREFIX.length);
+      System.arraycopy(x, 0, spki, ED25519_SPKI_PREFIX.length, x.length);
+      return KeyFactory.getInstance("Ed25519").generatePublic(new X509EncodedKeySpec(spki));
+    }
+    return null;
+  }
+
+  private static BigInteger unsigned(JsonNode jwk, String member) throws GeneralSecurityException {
+    return new BigInteger(1, decode(jwk, member));
+  }
+
+  private static byte[] decode(JsonNode jwk, String member) throws GeneralSecurityException {
+    if (!jwk.path(member).isTextual()) {
+      throw new GeneralSecurityException("JWK " + jwk.path("kid").asText() + " lacks " + member);
+    }
+    return Base64.decodeBase64(jwk.get(member).asText());
+  }
+
+  /**
+   * A parsed key with the issuer it is bound to, if any, and the ids it is found under.
+   */
+  private static final class Key {
+    final String issuer;
+    final SignatureAlgorithm sigAlg;
+    final Verifier verifier;
+    final String[] ids;
+
+    Key(String issuer, PublicKey publicKey, String... ids) {
+      this.issuer = issuer;
+      this.sigAlg = CertificateDocument.algorithmFor(publicKey);
+      this.verifier = CertificateDocument.verifierFor(publicKey);
+      this.ids = ids;
+    }
+  }
+
+  /**
+   * The keys of one load, indexed by issuer and by algorithm.
+   */
+  private static final class Snapshot {
+    private final Map<String, Indexes> byIssuer;
+    private final Indexes unbound;
+
+    Snapshot(Map<String, Indexes> byIssuer, Indexes unbound) {
+      this.byIssuer = byIssuer;
+      this.unbound = unbound;
+    }
+
+    List<Verifier> find(String issuer, String keyId, SignatureAlgorithm sigAlg) {
+      Indexes indexes = issuer == null ? null : byIssuer.get(issuer);
+      if (indexes == null) {
+        indexes = unbound;
+      }
+      VerifierIndex index = sigAlg == null ? indexes.all : indexes.byAlgorithm.get(sigAlg);
+      if (index == null) {
+        return null;
+      }
+      List<Verifier> verifiers = index.find(keyId);
+      return verifiers.isEmpty() ? null : verifiers;
+    }
+
+    static final class Builder {
+      private final Map<String, Indexes.Builder> byIssuer = new HashMap<String, Indexes.Builder>();
+      private final Indexes.Builder unbound = new Indexes.Builder();
+
+      void addAll(List<Key> keys) {
+        for (Key key : keys) {
+          Indexes.Builder indexes = unbound;
+          if (key.issuer != null) {
+            indexes = byIssuer.get(key.issuer);
+            if (indexes == null) {
+              indexes = new Indexes.Builder();
+              byIssuer.put(key.issuer, indexes);
+            }
+          }
+          indexes.add(key);
+        }
+      }
+
+      Snapshot build() {
+        Map<String, Indexes> issuers = new HashMap<String, Indexes>();
+        for (Map.Entry<String, Indexes.Builder> entry : byIssuer.entrySet()) {
+          issuers.put(entry.getKey(), entry.getValue().build());
+        }
+        return new Snapshot(issuers, unbound.build());
+      }
+    }
+  }
+
+  private static final class Indexes {
+    final VerifierIndex all;
+    final Map<SignatureAlgorithm, VerifierIndex> byAlgorithm;
+
+    Indexes(VerifierIndex all, Map<SignatureAlgorithm, VerifierIndex> byAlgorithm) {
+      this.all = all;
+      this.byAlgorithm = byAlgorithm;
+    }
+
+    static final class Builder {
+      private final VerifierIndex.Builder all = new VerifierIndex.Builder();
+      private final Map<SignatureAlgorithm, VerifierIndex.Builder> byAlgorithm =
+          new EnumMap<SignatureAlgorithm, VerifierIndex.Builder>(SignatureAlgorithm.class);
+
+      void add(Key key) {
+        all.add(key.verifier, key.ids);
+        VerifierIndex.Builder index = byAlgorithm.get(key.sigAlg);
+        if (index == null) {
+          index = new VerifierIndex.Builder();
+          byAlgorithm.put(key.sigAlg, index);
+        }
+        index.add(key.verifier, key.ids);
+      }
+
+      Indexes build() {
+        Map<SignatureAlgorithm, VerifierIndex> indexes =
+            new EnumMap<SignatureAlgorithm, VerifierIndex>(SignatureAlgorithm.class);
+        for (Map.Entry<SignatureAlgorithm, VerifierIndex.Builder> entry : byAlgorithm.entrySet()) {
+          indexes.put(entry.getKey(), entry.getValue().build());
+        }
+        return new Indexes(all.build(), indexes);
+      }
+    }
+  }
+}
@@ -17,28 +17,37 @@
 package net.oauth.jsontoken.discovery;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.DeserializationConfig;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import net.oauth.jsontoken.crypto.MagicRsaPublicKey;
+import net.oauth.jsontoken.crypto.RsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.Verifier;
 
 import java.security.PublicKey;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Implementation of the {@link ServerInfo} interface that assumes the
  * server info document is in JSON format. It can parse such a JSON-formatted
  * server info document and exposes its contents through the requisite
  * methods of the {@link ServerInfo} interface.
+ *
+ * Each magic key is parsed, and its verifier built, the first time it is looked
+ * up; later lookups return the same key and verifier.
  */
 public class JsonServerInfo implements ServerInfo {
-  static ObjectMapper mapper = new ObjectMapper();
+  static final ObjectMapper mapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
   @JsonProperty("verification_keys")
   private final Map<String, String> verificationKeys = new LinkedHashMap<String, String>();
 
+  private final ConcurrentMap<String, Key> keys = new ConcurrentHashMap<String, Key>();
+
   /**
    * Parses a JSON-formatted server info document and returns it as a
    * {@link JsonServerInfo} object.
@@ -47,7 +56,6 @@ public class JsonServerInfo implements ServerInfo {
   public static JsonServerInfo getDocument(String json) {
       JsonServerInfo jsi = null;
       try {
-          mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
           jsi = mapper.readValue(json, JsonServerInfo.class);
       } catch (Exception e) {
           e.printStackTrace();
@@ -61,11 +69,47 @@ public class JsonServerInfo implements ServerInfo {
    */
   @Override
   public PublicKey getVerificationKey(String keyId) {
+    Key key = getKey(keyId);
+    return key == null ? null : key.publicKey;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see net.oauth.jsontoken.discovery.ServerInfo#getVerifier(java.lang.String)
+   */
+  @Override
+  public Verifier getVerifier(String keyId) {
+    Key key = getKey(keyId);
+    return key == null ? null : key.verifier;
+  }
+
+  private Key getKey(String keyId) {
+    if (keyId == null) {
+      // JSON object keys are never null
+      return null;
+    }
+    Key key = keys.get(keyId);
+    if (key != null) {
+      return key;
+    }
     String magicKey = verificationKeys.get(keyId);
     if (magicKey == null) {
       return null;
-    } else {
-      return new MagicRsaPublicKey(magicKey).getKey();
+    }
+    // racing threads may both parse the key; the first one stored wins
+    PublicKey publicKey = new MagicRsaPublicKey(magicKey).getKey();
+    key = new Key(publicKey, new RsaSHA256Verifier(publicKey));
+    Key existing = keys.putIfAbsent(keyId, key);
+    return existing == null ? key : existing;
+  }
+
+  private static final class Key {
+    final PublicKey publicKey;
+    final Verifier verifier;
+
+    Key(PublicKey publicKey, Verifier verifier) {
+      this.publicKey = publicKey;
+      this.verifier = verifier;
     }
   }
 }
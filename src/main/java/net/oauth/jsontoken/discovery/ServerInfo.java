@@ -16,6 +16,9 @@
  */
 package net.oauth.jsontoken.discovery;
 
+import net.oauth.jsontoken.crypto.RsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.Verifier;
+
 import java.security.PublicKey;
 
 /**
@@ -31,4 +34,15 @@ public interface ServerInfo {
    */
   public PublicKey getVerificationKey(String keyId);
 
+  /**
+   * Returns an RS256 verifier for the verification key with the given key id,
+   * or null if there is no such key. Implementations that are looked up often
+   * should override this to return a verifier built once per key; verifiers are
+   * thread-safe.
+   */
+  public default Verifier getVerifier(String keyId) {
+    PublicKey key = getVerificationKey(keyId);
+    return key == null ? null : new RsaSHA256Verifier(key);
+  }
+
 }
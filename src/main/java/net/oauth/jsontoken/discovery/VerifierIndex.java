@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.crypto.Verifier;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of verification keys, indexed by key id and by certificate
+ * thumbprint, for {@link VerifierProvider}s that publish several keys at once.
+ */
+public final class VerifierIndex {
+
+  private final List<Verifier> all;
+  private final Map<String, List<Verifier>> byId;
+
+  private VerifierIndex(List<Verifier> all, Map<String, List<Verifier>> byId) {
+    this.all = all;
+    this.byId = byId;
+  }
+
+  /**
+   * Returns the verifiers for a key id or certificate thumbprint. Returns every
+   * verifier if the id is null or unknown, as {@link VerifierProvider#findVerifier}
+   * expects.
+   */
+  public List<Verifier> find(String keyId) {
+    if (keyId != null) {
+      List<Verifier> match = byId.get(keyId);
+      if (match != null) {
+        return match;
+      }
+    }
+    return all;
+  }
+
+  /**
+   * Returns every verifier, in the order they were added.
+   */
+  public List<Verifier> getAll() {
+    return all;
+  }
+
+  /**
+   * Returns the base64url encoded SHA-1 (x5t) and SHA-256 (x5t#S256) thumbprints
+   * of a certificate.
+   */
+  public static String[] thumbprints(X509Certificate certificate) throws CertificateEncodingException {
+    byte[] der = certificate.getEncoded();
+    return new String[] {thumbprint("SHA-1", der), thumbprint("SHA-256", der)};
+  }
+
+  private static String thumbprint(String digest, byte[] der) {
+    try {
+      return Base64.encodeBase64URLSafeString(MessageDigest.getInstance(digest).digest(der));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Collects verifiers for a {@link VerifierIndex}.
+   */
+  public static final class Builder {
+    private final List<Verifier> all = new ArrayList<Verifier>();
+    private final Map<String, List<Verifier>> byId = new HashMap<String, List<Verifier>>();
+
+    /**
+     * Adds a verifier that can be found under any of the given ids.
+     * @param verifier the verifier to add.
+     * @param ids key ids and thumbprints of the key; null entries are skipped.
+     */
+    public Builder add(Verifier verifier, String... ids) {
+      all.add(verifier);
+      for (String id : ids) {
+        if (id != null) {
+          List<Verifier> verifiers = byId.get(id);
+          if (verifiers == null) {
+            verifiers = new ArrayList<Verifier>(1);
+            byId.put(id, verifiers);
+          }
+          verifiers.add(verifier);
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Adds the verifier for a certificate, found under its key id and its thumbprints.
+     */
+    public Builder add(Verifier verifier, String keyId, X509Certificate certificate)
+        throws CertificateEncodingException {
+      String[] thumbprints = thumbprints(certificate);
+      return add(verifier, keyId, thumbprints[0], thumbprints[1]);
+    }
+
+    public VerifierIndex build() {
+      Map<String, List<Verifier>> index = new HashMap<String, List<Verifier>>(byId.size() * 2);
+      for (Map.Entry<String, List<Verifier>> entry : byId.entrySet()) {
+        index.put(entry.getKey(), entry.getValue().size() == 1
+            ? Collections.singletonList(entry.getValue().get(0))
+            : Collections.unmodifiableList(new ArrayList<Verifier>(entry.getValue())));
+      }
+      return new VerifierIndex(Collections.unmodifiableList(new ArrayList<Verifier>(all)), index);
+    }
+  }
+}
@@ -18,6 +18,8 @@ package net.oauth.jsontoken.discovery;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.oauth.jsontoken.JsonTokenParser;
 import net.oauth.jsontoken.crypto.SignatureAlgorithm;
@@ -36,12 +38,44 @@ import net.oauth.jsontoken.crypto.Verifier;
 public class VerifierProviders {
 
   private final Map<SignatureAlgorithm, VerifierProvider> map = new HashMap<SignatureAlgorithm, VerifierProvider>();
+  private final ConcurrentMap<SignatureAlgorithm, AsyncVerifierProvider> asyncMap =
+      new ConcurrentHashMap<SignatureAlgorithm, AsyncVerifierProvider>();
 
   /**
    * Sets a new {@link VerifierProvider} for the given {@link SignatureAlgorithm}.
    */
   public void setVerifierProvider(SignatureAlgorithm alg, VerifierProvider provider) {
     map.put(alg, provider);
+    asyncMap.remove(alg);
+  }
+
+  /**
+   * Sets a new {@link AsyncVerifierProvider} for the given {@link SignatureAlgorithm},
+   * used when verifying tokens asynchronously.
+   */
+  public void setAsyncVerifierProvider(SignatureAlgorithm alg, AsyncVerifierProvider provider) {
+    asyncMap.put(alg, provider);
+  }
+
+  /**
+   * Returns the {@link AsyncVerifierProvider} for the given {@link SignatureAlgorithm}.
+   * If only a blocking {@link VerifierProvider} was set for the algorithm, it is
+   * wrapped in an {@link AsyncVerifierProviderAdapter}, created once.
+   */
+  public AsyncVerifierProvider getAsyncVerifierProvider(SignatureAlgorithm alg) {
+    AsyncVerifierProvider provider = asyncMap.get(alg);
+    if (provider == null) {
+      VerifierProvider blocking = map.get(alg);
+      if (blocking == null) {
+        return null;
+      }
+      provider = new AsyncVerifierProviderAdapter(blocking);
+      AsyncVerifierProvider existing = asyncMap.putIfAbsent(alg, provider);
+      if (existing != null) {
+        provider = existing;
+      }
+    }
+    return provider;
   }
 
   /**
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.metrics;
+
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.VerificationResult.Reason;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link TokenMetrics} that hands every timing, in nanoseconds, to a latency
+ * recorder, and counts rejections, key fetches and key scans.
+ *
+ * A recorder is anything with a {@code recordValue(long)} method, such as an
+ * HdrHistogram {@code Recorder}. The factory is asked once for each recorder,
+ * with the lower case name of the {@link TokenMetrics.Stage} or
+ * {@value #KEY_FETCH} for key downloads:
+ *
+ * <pre>
+ * Map&lt;String, Recorder&gt; recorders = new ConcurrentHashMap&lt;&gt;();
+ * TokenMetrics metrics = new RecorderTokenMetrics(
+ *     name -&gt; recorders.computeIfAbsent(name, n -&gt; new Recorder(3))::recordValue);
+ * </pre>
+ */
+public class RecorderTokenMetrics implements TokenMetrics {
+
+  /** Name of the recorder for key downloads. */
+  public static final String KEY_FETCH = "key_fetch";
+
+  private final LongConsumer[] stageRecorders;
+  private final LongConsumer keyFetchRecorder;
+  private final LongAdder[] rejections;
+  private final LongAdder keyFetchSuccesses = new LongAdder();
+  private final LongAdder keyFetchFailures = new LongAdder();
+  private final LongAdder keyScans = new LongAdder();
+
+  /**
+   * Public constructor.
+   * @param recorderFactory returns the recorder for a name, or null to not record it.
+   */
+  public RecorderTokenMetrics(Function<String, LongConsumer> recorderFactory) {
+    Stage[] stages = Stage.values();
+    stageRecorders = new LongConsumer[stages.length];
+    for (Stage stage : stages) {
+      stageRecorders[stage.ordinal()] = recorderFactory.apply(stage.name().toLowerCase(Locale.ROOT));
+    }
+    keyFetchRecorder = recorderFactory.apply(KEY_FETCH);
+    rejections = new LongAdder[Reason.values().length];
+    for (int i = 0; i < rejections.length; i++) {
+      rejections[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public void recordStage(Stage stage, long nanos) {
+    LongConsumer recorder = stageRecorders[stage.ordinal()];
+    if (recorder != null) {
+      recorder.accept(nanos);
+    }
+  }
+
+  @Override
+  public void recordRejection(Reason reason) {
+    rejections[reason.ordinal()].increment();
+  }
+
+  @Override
+  public void recordKeyFetch(boolean success, long nanos) {
+    (success ? keyFetchSuccesses : keyFetchFailures).increment();
+    if (keyFetchRecorder != null) {
+      keyFetchRecorder.accept(nanos);
+    }
+  }
+
+  @Override
+  public void recordKeyScan() {
+    keyScans.increment();
+  }
+
+  /**
+   * Returns how many tokens were rejected for the given reason.
+   */
+  public long getRejectionCount(Reason reason) {
+    return rejections[JsonTokenUtil.checkNotNull(reason).ordinal()].sum();
+  }
+
+  /**
+   * Returns how many key downloads succeeded.
+   */
+  public long getKeyFetchSuccessCount() {
+    return keyFetchSuccesses.sum();
+  }
+
+  /**
+   * Returns how many key downloads failed.
+   */
+  public long getKeyFetchFailureCount() {
+    return keyFetchFailures.sum();
+  }
+
+  /**
+   * Returns how many signature checks tried more than one verifier.
+   */
+  public long getKeyScanCount() {
+    return keyScans.sum();
+  }
+}
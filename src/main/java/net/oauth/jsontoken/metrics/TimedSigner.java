@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.metrics;
+
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Signer;
+import net.oauth.jsontoken.metrics.TokenMetrics.Stage;
+
+import java.security.SignatureException;
+
+/**
+ * A {@link Signer} that reports how long each signature takes as {@link Stage#SIGN}.
+ */
+public class TimedSigner implements Signer {
+
+  private final Signer signer;
+  private final TokenMetrics metrics;
+
+  /**
+   * Public constructor.
+   * @param signer the signer that creates the signatures.
+   * @param metrics receives the timings.
+   */
+  public TimedSigner(Signer signer, TokenMetrics metrics) {
+    this.signer = JsonTokenUtil.checkNotNull(signer);
+    this.metrics = JsonTokenUtil.checkNotNull(metrics);
+  }
+
+  @Override
+  public String getKeyId() {
+    return signer.getKeyId();
+  }
+
+  @Override
+  public String getIssuer() {
+    return signer.getIssuer();
+  }
+
+  @Override
+  public SignatureAlgorithm getSignatureAlgorithm() {
+    return signer.getSignatureAlgorithm();
+  }
+
+  @Override
+  public byte[] sign(byte[] source) throws SignatureException {
+    long start = System.nanoTime();
+    try {
+      return signer.sign(source);
+    } finally {
+      metrics.recordStage(Stage.SIGN, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public byte[] sign(byte[] source, int offset, int length) throws SignatureException {
+    long start = System.nanoTime();
+    try {
+      return signer.sign(source, offset, length);
+    } finally {
+      metrics.recordStage(Stage.SIGN, System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.jsontoken.metrics;
+
+import net.oauth.jsontoken.VerificationResult.Reason;
+
+/**
+ * Receives timings and counts from token parsing, signing and key fetching.
+ * Implementations must be thread-safe and fast; they are called on the
+ * verification path. All methods do nothing by default.
+ *
+ * Components that report metrics take one through a {@code setMetrics} method.
+ * With {@link #NOOP}, the default, they skip reading the clock altogether.
+ */
+public interface TokenMetrics {
+
+  /**
+   * The timed stages of issuing and verifying a token.
+   */
+  public enum Stage {
+    /** Base64url decoding of the header and payload. */
+    DECODE,
+    /** JSON parsing of the decoded header and payload. */
+    PARSE,
+    /** Asking the verifier provider for the verification keys. */
+    KEY_LOOKUP,
+    /** Checking the signature. */
+    SIGNATURE,
+    /** Validating iat/exp and running the checkers. */
+    CLAIMS,
+    /** Creating a signature, reported by {@link TimedSigner}. */
+    SIGN
+  }
+
+  /** Metrics that are thrown away. */
+  public static final TokenMetrics NOOP = new TokenMetrics() { };
+
+  /**
+   * Records how long one stage took.
+   */
+  public default void recordStage(Stage stage, long nanos) {
+  }
+
+  /**
+   * Records a rejected token.
+   */
+  public default void recordRejection(Reason reason) {
+  }
+
+  /**
+   * Records a download of verification keys, such as a certificate document.
+   * @param success false if the keys could not be fetched or parsed.
+   */
+  public default void recordKeyFetch(boolean success, long nanos) {
+  }
+
+  /**
+   * Records a signature check that had to try more than one verifier, because
+   * the token named no key or the key id matched none.
+   */
+  public default void recordKeyScan() {
+  }
+}
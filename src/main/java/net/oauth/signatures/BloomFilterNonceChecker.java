@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.signatures;
+
+import net.oauth.jsontoken.Clock;
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.SystemClock;
+
+import java.security.SignatureException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link NonceChecker} for very high nonce volumes that uses a fixed amount of
+ * memory no matter how much traffic arrives, at the price of occasionally
+ * rejecting a fresh nonce as a replay. Replays themselves are always rejected.
+ *
+ * The replay window is split into time slices, each with its own Bloom filter.
+ * New nonces go into the filter of the current slice; a nonce is a replay if any
+ * filter still inside the window contains it. When a slice falls out of the window
+ * its filter is cleared and reused for the next slice. The filters are sized from
+ * the expected number of nonces per window and the wanted false positive rate.
+ *
+ * Bits are set with compare-and-set, so checks don't lock, except for the one
+ * check per slice that clears a filter for reuse. Concurrent checks of the same
+ * nonce are told apart through a small table of in-flight nonces; only if that
+ * table slot is busy with another nonce can two simultaneous uses both pass.
+ */
+public class BloomFilterNonceChecker implements NonceChecker {
+
+  public static final int DEFAULT_SLICE_COUNT = 4;
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 1e-6;
+
+  private static final int IN_FLIGHT_SLOTS = 1024;
+
+  private final Clock clock;
+  private final long sliceInMillis;
+  private final int sliceCount;
+  private final long bitsPerFilter;
+  private final int hashCount;
+  private final Slice[] slices;
+  private final AtomicLongArray inFlight = new AtomicLongArray(IN_FLIGHT_SLOTS);
+
+  private final LongAdder rejects = new LongAdder();
+
+  /**
+   * Creates a checker with the default replay window, slice count and false positive rate.
+   * @param expectedNonces how many nonces are expected within one replay window.
+   */
+  public BloomFilterNonceChecker(long expectedNonces) {
+    this(new SystemClock(), InMemoryNonceChecker.DEFAULT_WINDOW_IN_SECONDS, DEFAULT_SLICE_COUNT,
+        expectedNonces, DEFAULT_FALSE_POSITIVE_RATE);
+  }
+
+  /**
+   * Public constructor.
+   * @param clock the clock that decides when slices expire.
+   * @param windowInSeconds how long a nonce is remembered; should cover the token
+   *   lifetime plus the clock skew the token parser accepts on both ends.
+   * @param sliceCount how many slices the window is split into.
+   * @param expectedNonces how many nonces are expected within one window. More
+   *   nonces raise the false positive rate, not the memory used.
+   * @param falsePositiveRate the wanted chance of rejecting a fresh nonce.
+   */
+  public BloomFilterNonceChecker(Clock clock, long windowInSeconds, int sliceCount,
+      long expectedNonces, double falsePositiveRate) {
+    if (windowInSeconds <= 0) {
+      throw new IllegalArgumentException("windowInSeconds must be positive");
+    }
+    if (sliceCount <= 0) {
+      throw new IllegalArgumentException("sliceCount must be positive");
+    }
+    if (expectedNonces <= 0) {
+      throw new IllegalArgumentException("expectedNonces must be positive");
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+    }
+    this.clock = JsonTokenUtil.checkNotNull(clock);
+    this.sliceCount = sliceCount;
+    this.sliceInMillis = (windowInSeconds * 1000 + sliceCount - 1) / sliceCount;
+
+    // a check looks at up to sliceCount + 1 filters, each must be that much more precise
+    long noncesPerSlice = (expectedNonces + sliceCount - 1) / sliceCount;
+    double rate = falsePositiveRate / (sliceCount + 1);
+    long bits = (long) Math.ceil(-noncesPerSlice * Math.log(rate) / (Math.log(2) * Math.log(2)));
+    long words = (bits + 63) / 64;
+    if (words > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("expectedNonces is too large");
+    }
+    this.bitsPerFilter = words * 64;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitsPerFilter / noncesPerSlice * Math.log(2)));
+    this.slices = new Slice[sliceCount + 1];
+    for (int i = 0; i < slices.length; i++) {
+      slices[i] = new Slice((int) words);
+    }
+  }
+
+  @Override
+  public void checkNonce(String nonce) throws SignatureException {
+    if (nonce == null) {
+      throw new SignatureException("token has no nonce");
+    }
+    long current = clock.currentTimeMillis() / sliceInMillis;
+    long hash = hash(nonce);
+    long hash1 = mix(hash);
+    long hash2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+    // a zero fingerprint would look like a free slot
+    long fingerprint = hash1 == 0 ? 1 : hash1;
+    int slot = (int) (hash2 >>> 33) & (IN_FLIGHT_SLOTS - 1);
+    boolean claimed = inFlight.compareAndSet(slot, 0, fingerprint);
+    if (!claimed && inFlight.get(slot) == fingerprint) {
+      rejects.increment();
+      throw new SignatureException("nonce has been used before");
+    }
+    try {
+      if (!add(current, hash1, hash2)) {
+        rejects.increment();
+        throw new SignatureException("nonce has been used before");
+      }
+    } finally {
+      if (claimed) {
+        inFlight.set(slot, 0);
+      }
+    }
+  }
+
+  private boolean add(long current, long hash1, long hash2) {
+    for (Slice slice : slices) {
+      long index = slice.index;
+      if (index < current && index >= current - sliceCount && slice.contains(hash1, hash2)) {
+        return false;
+      }
+    }
+    Slice slice = slices[(int) (current % slices.length)];
+    if (slice.index != current) {
+      rotate(slice, current);
+    }
+    return slice.add(hash1, hash2);
+  }
+
+  private void rotate(Slice slice, long current) {
+    synchronized (slice) {
+      if (slice.index < current) {
+        slice.clear();
+        slice.index = current;
+      }
+    }
+  }
+
+  /**
+   * Returns how many tokens were rejected as replays, including false positives.
+   */
+  public long getRejectCount() {
+    return rejects.sum();
+  }
+
+  /**
+   * Returns the number of bytes used by the filters, which never changes.
+   */
+  public long getSizeInBytes() {
+    return bitsPerFilter / 8 * slices.length;
+  }
+
+  /**
+   * Returns the number of bits in each filter.
+   */
+  public long getBitsPerFilter() {
+    return bitsPerFilter;
+  }
+
+  /**
+   * Returns how many bits each nonce sets in a filter.
+   */
+  public int getHashCount() {
+    return hashCount;
+  }
+
+  // 64-bit FNV-1a over the chars, without encoding the string
+  private static long hash(String nonce) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < nonce.length(); i++) {
+      hash ^= nonce.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  // the MurmurHash3 finalizer
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * The Bloom filter of one time slice.
+   */
+  private final class Slice {
+    final AtomicLongArray words;
+    volatile long index = Long.MIN_VALUE;
+
+    Slice(int words) {
+      this.words = new AtomicLongArray(words);
+    }
+
+    boolean contains(long hash1, long hash2) {
+      long probe = hash1;
+      for (int i = 0; i < hashCount; i++, probe += hash2) {
+        long bit = (probe & Long.MAX_VALUE) % bitsPerFilter;
+        if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Sets the nonce's bits and returns true if at least one was not set before.
+     */
+    boolean add(long hash1, long hash2) {
+      boolean added = false;
+      long probe = hash1;
+      for (int i = 0; i < hashCount; i++, probe += hash2) {
+        long bit = (probe & Long.MAX_VALUE) % bitsPerFilter;
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long value;
+        while (((value = words.get(word)) & mask) == 0) {
+          if (words.compareAndSet(word, value, value | mask)) {
+            added = true;
+            break;
+          }
+        }
+      }
+      return added;
+    }
+
+    void clear() {
+      for (int i = 0; i < words.length(); i++) {
+        words.set(i, 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.signatures;
+
+import net.oauth.jsontoken.Clock;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.SystemClock;
+
+import java.security.SignatureException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link NonceChecker} that remembers nonces in memory for as long as the
+ * tokens carrying them can be accepted.
+ *
+ * Nonces are spread over independently locked stripes by hash, so concurrent
+ * checks of different nonces rarely contend. Within a stripe, nonces are kept in
+ * a small ring of time buckets; once a bucket is older than the replay window it
+ * is dropped as a whole instead of expiring entries one by one. A nonce is
+ * therefore remembered for at least the window and at most one bucket longer.
+ *
+ * The number of remembered nonces is bounded. The bound is split evenly over the
+ * stripes, and what happens when a stripe is full is decided by the
+ * {@link OverflowPolicy}.
+ */
+public class InMemoryNonceChecker implements NonceChecker {
+
+  /**
+   * What to do with a new nonce when the checker is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * Reject the token, as if its nonce had been seen. Replays are never
+     * accepted, but legitimate tokens fail until older nonces expire.
+     */
+    REJECT,
+    /**
+     * Forget the oldest bucket of the nonce's stripe early to make room. Tokens
+     * keep being accepted, but the forgotten nonces could be replayed while their
+     * tokens are still valid.
+     */
+    EVICT_OLDEST
+  }
+
+  /**
+   * Default replay window: the default token lifetime plus the default clock
+   * skew on both ends.
+   */
+  public static final long DEFAULT_WINDOW_IN_SECONDS = (JsonToken.DEFAULT_LIFETIME_IN_MINS
+      + 2 * SystemClock.DEFAULT_ACCEPTABLE_CLOCK_SKEW_IN_MIN) * 60;
+  public static final int DEFAULT_MAXIMUM_SIZE = 1000000;
+  public static final int DEFAULT_BUCKET_COUNT = 8;
+
+  private static final int STRIPES = 64;
+
+  private final Clock clock;
+  private final long bucketInMillis;
+  private final int bucketCount;
+  private final int maximumSizePerStripe;
+  private final OverflowPolicy overflowPolicy;
+  private final Stripe[] stripes;
+
+  private final LongAdder rejects = new LongAdder();
+  private final LongAdder overflows = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a checker with the default window and size, rejecting tokens when full.
+   */
+  public InMemoryNonceChecker() {
+    this(new SystemClock(), DEFAULT_WINDOW_IN_SECONDS, DEFAULT_MAXIMUM_SIZE, OverflowPolicy.REJECT);
+  }
+
+  /**
+   * Public constructor.
+   * @param clock the clock that decides when nonces expire.
+   * @param windowInSeconds how long a nonce is remembered; should cover the token
+   *   lifetime plus the clock skew the token parser accepts on both ends.
+   * @param maximumSize the most nonces remembered at once.
+   * @param overflowPolicy what to do with new nonces when full.
+   */
+  public InMemoryNonceChecker(Clock clock, long windowInSeconds, int maximumSize,
+      OverflowPolicy overflowPolicy) {
+    this(clock, windowInSeconds, DEFAULT_BUCKET_COUNT, maximumSize, overflowPolicy);
+  }
+
+  /**
+   * Public constructor.
+   * @param clock the clock that decides when nonces expire.
+   * @param windowInSeconds how long a nonce is remembered.
+   * @param bucketCount how many buckets the window is split into. More buckets
+   *   drop expired nonces sooner, at the cost of more lookups per check.
+   * @param maximumSize the most nonces remembered at once.
+   * @param overflowPolicy what to do with new nonces when full.
+   */
+  public InMemoryNonceChecker(Clock clock, long windowInSeconds, int bucketCount, int maximumSize,
+      OverflowPolicy overflowPolicy) {
+    if (windowInSeconds <= 0) {
+      throw new IllegalArgumentException("windowInSeconds must be positive");
+    }
+    if (bucketCount <= 0) {
+      throw new IllegalArgumentException("bucketCount must be positive");
+    }
+    if (maximumSize < STRIPES) {
+      throw new IllegalArgumentException("maximumSize must be at least " + STRIPES);
+    }
+    this.clock = JsonTokenUtil.checkNotNull(clock);
+    this.overflowPolicy = JsonTokenUtil.checkNotNull(overflowPolicy);
+    this.bucketCount = bucketCount;
+    this.bucketInMillis = (windowInSeconds * 1000 + bucketCount - 1) / bucketCount;
+    this.maximumSizePerStripe = maximumSize / STRIPES;
+    this.stripes = new Stripe[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(bucketCount + 1);
+    }
+  }
+
+  @Override
+  public void checkNonce(String nonce) throws SignatureException {
+    if (nonce == null) {
+      throw new SignatureException("token has no nonce");
+    }
+    long bucket = clock.currentTimeMillis() / bucketInMillis;
+    int hash = nonce.hashCode();
+    Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    String failure;
+    synchronized (stripe) {
+      failure = stripe.add(nonce, bucket);
+    }
+    if (failure != null) {
+      throw new SignatureException(failure);
+    }
+  }
+
+  /**
+   * Returns how many nonces are remembered. Expired buckets are dropped when
+   * their stripe is next used, so this may include some expired nonces.
+   */
+  public long getSize() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size;
+    }
+    return size;
+  }
+
+  /**
+   * Returns how many tokens were rejected because their nonce had been seen.
+   */
+  public long getRejectCount() {
+    return rejects.sum();
+  }
+
+  /**
+   * Returns how many new nonces found the checker full. Under
+   * {@link OverflowPolicy#REJECT} their tokens were rejected as well.
+   */
+  public long getOverflowCount() {
+    return overflows.sum();
+  }
+
+  /**
+   * Returns how many nonces were forgotten, either because they expired or to
+   * make room under {@link OverflowPolicy#EVICT_OLDEST}.
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static HashSet<String>[] newBuckets(int slots) {
+    return new HashSet[slots];
+  }
+
+  /**
+   * A ring of buckets; slot i holds the nonces first seen in time bucket
+   * {@code indexes[i]}. Guarded by its own monitor.
+   */
+  private final class Stripe {
+    final HashSet<String>[] buckets;
+    final long[] indexes;
+    volatile int size;
+
+    Stripe(int slots) {
+      buckets = newBuckets(slots);
+      indexes = new long[slots];
+    }
+
+    /**
+     * Remembers the nonce, or returns why the token must be rejected.
+     */
+    String add(String nonce, long bucket) {
+      for (int i = 0; i < buckets.length; i++) {
+        Set<String> nonces = buckets[i];
+        if (nonces == null) {
+          continue;
+        }
+        if (indexes[i] < bucket - bucketCount) {
+          drop(i);
+        } else if (nonces.contains(nonce)) {
+          rejects.increment();
+          return "nonce has been used before";
+        }
+      }
+      if (size >= maximumSizePerStripe) {
+        overflows.increment();
+        if (overflowPolicy == OverflowPolicy.REJECT || !dropOldest()) {
+          return "too many nonces to remember";
+        }
+      }
+      int slot = (int) (bucket % buckets.length);
+      HashSet<String> nonces = buckets[slot];
+      if (nonces == null || indexes[slot] != bucket) {
+        if (nonces != null) {
+          drop(slot);
+        }
+        nonces = new HashSet<String>();
+        buckets[slot] = nonces;
+        indexes[slot] = bucket;
+      }
+      nonces.add(nonce);
+      size++;
+      return null;
+    }
+
+    private boolean dropOldest() {
+      int oldest = -1;
+      for (int i = 0; i < buckets.length; i++) {
+        if (buckets[i] != null && (oldest < 0 || indexes[i] < indexes[oldest])) {
+          oldest = i;
+        }
+      }
+      if (oldest < 0) {
+        return false;
+      }
+      drop(oldest);
+      return true;
+    }
+
+    private void drop(int slot) {
+      int dropped = buckets[slot].size();
+      buckets[slot] = null;
+      size -= dropped;
+      evictions.add(dropped);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.oauth.signatures;
+
+import net.oauth.jsontoken.JsonTokenParser;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Keeps one {@link JsonTokenParser}, with its audience checker, per endpoint URI, so
+ * that parsing a token doesn't construct a parser and checker on every call. The
+ * URIs usually come from requests, so the number of cached parsers is bounded;
+ * parsers for URIs beyond the bound are created per call.
+ */
+final class ParserCache {
+
+  static final int MAXIMUM_SIZE = 1024;
+
+  private final ConcurrentMap<String, JsonTokenParser> parsers =
+      new ConcurrentHashMap<String, JsonTokenParser>();
+  private final Function<String, JsonTokenParser> factory;
+
+  /**
+   * @param factory creates the parser for a URI.
+   */
+  ParserCache(Function<String, JsonTokenParser> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Returns the parser for a URI.
+   */
+  JsonTokenParser get(String uri) {
+    JsonTokenParser parser = parsers.get(uri);
+    if (parser == null) {
+      parser = factory.apply(uri);
+      if (parsers.size() < MAXIMUM_SIZE) {
+        JsonTokenParser existing = parsers.putIfAbsent(uri, parser);
+        if (existing != null) {
+          parser = existing;
+        }
+      }
+    }
+    return parser;
+  }
+
+  int size() {
+    return parsers.size();
+  }
+}
@@ -16,52 +16,22 @@
  */
 package net.oauth.signatures;
 
+import java.util.Collections;
 
-import java.net.URI;
-import java.security.SignatureException;
-import java.util.Map;
-
-import net.oauth.jsontoken.Checker;
-import net.oauth.jsontoken.JsonToken;
-import net.oauth.jsontoken.JsonTokenUtil;
+import net.oauth.jsontoken.AudienceChecker;
 
 /**
- * Audience checker for signed Json Assertion.
+ * Audience checker for signed Json Assertion. The scheme and authority of the
+ * audience have to match those of the accessed URI.
  */
-public class SignedJsonAssertionAudienceChecker implements Checker {
-
-  // URI that the client is accessing, as seen by the server
-  private final String tokenEndpointUri;
+public class SignedJsonAssertionAudienceChecker extends AudienceChecker {
 
   /**
    * Public constructor.
    * @param uri the URI against which the signed OAuth token was exercised.
+   * @throws IllegalArgumentException if the URI cannot be parsed.
    */
   public SignedJsonAssertionAudienceChecker(String uri) {
-    this.tokenEndpointUri = uri;
-  }
-
-  /**
-   * @see net.oauth.jsontoken.Checker#check(java.util.Map)
-   */
-  @Override
-  public void check(Map<String, Object> payload) throws SignatureException {
-    checkUri(tokenEndpointUri,
-            JsonTokenUtil.checkNotNull(
-                (String) payload.get(JsonToken.AUDIENCE),
-                "Audience cannot be null!"));
-  }
-
-  private static void checkUri(String ourUriString, String tokenUriString) throws SignatureException {
-    URI ourUri = URI.create(ourUriString);
-    URI tokenUri = URI.create(tokenUriString);
-
-    if (!ourUri.getScheme().equalsIgnoreCase(tokenUri.getScheme())) {
-      throw new SignatureException("scheme in token URI (" + tokenUri.getScheme() + ") is wrong");
-    }
-
-    if (!ourUri.getAuthority().equalsIgnoreCase(tokenUri.getAuthority())) {
-      throw new SignatureException("authority in token URI (" + tokenUri.getAuthority() + ") is wrong");
-    }
+    super(Match.ORIGIN, Collections.singletonList(uri));
   }
 }
@@ -94,13 +94,12 @@ public class SignedJsonAssertionToken extends JsonToken {
   }
   
   @Override
-  protected String computeSignatureBaseString() {
+  protected void prepareForSigning() {
     if (getIssuedAt() == null) {
       setIssuedAt(clock.now());
     }
     if (getExpiration() == null) {
       setExpiration(getIssuedAt().plusSeconds(DEFAULT_LIFETIME_IN_MINS * 60));
     }
-    return super.computeSignatureBaseString();
   }
 }
@@ -24,7 +24,8 @@ import net.oauth.jsontoken.SystemClock;
 import net.oauth.jsontoken.discovery.VerifierProviders;
 
 /**
- * Parses signed json assertion.
+ * Parses signed json assertion. Instances are immutable and can be shared between threads;
+ * the parser and audience checker for each endpoint URI are created once and reused.
  */
 public class  SignedJsonAssertionTokenParser {
   
@@ -33,6 +34,7 @@ public class  SignedJsonAssertionTokenParser {
   private final VerifierProviders locators;
   private final NonceChecker nonceChecker;
   private final Clock clock;
+  private final ParserCache parsers;
 
   /**
    * Public constructor.
@@ -62,6 +64,8 @@ public class  SignedJsonAssertionTokenParser {
     this.locators = locators;
     this.nonceChecker = nonceChecker;
     this.clock = clock;
+    this.parsers = new ParserCache(
+        uri -> new JsonTokenParser(clock, locators, new SignedJsonAssertionAudienceChecker(uri)));
   }
 
 
@@ -108,7 +112,7 @@ public class  SignedJsonAssertionTokenParser {
    * @throws SignatureException if the signature (or anything else) doesn't check out.
    */
   public SignedJsonAssertionToken parseToken(String jsonAssertion, String uri) throws Exception {
-    JsonTokenParser parser = new JsonTokenParser(clock, locators, new SignedJsonAssertionAudienceChecker(uri));
+    JsonTokenParser parser = parsers.get(uri);
 
     SignedJsonAssertionToken token = new SignedJsonAssertionToken(parser.verifyAndDeserialize(jsonAssertion));
 
@@ -89,12 +89,11 @@ public class SignedOAuthToken extends JsonToken {
   }
 
   @Override
-  public String serializeAndSign() throws SignatureException {
+  protected void prepareForSigning() {
       JsonTokenUtil.checkNotNull(getOAuthToken(), "must set OAuth token");
       JsonTokenUtil.checkNotNull(getNonce(), "must set nonce");
       JsonTokenUtil.checkNotNull(getAudience(), "must set Audience");
       JsonTokenUtil.checkNotNull(getMethod(), "must set method");
-    return super.serializeAndSign();
   }
 
   private String getBodyHash(byte[] requestBody) {
@@ -24,13 +24,15 @@ import net.oauth.jsontoken.SystemClock;
 import net.oauth.jsontoken.discovery.VerifierProviders;
 
 /**
- * Parses signed OAuth tokens.
+ * Parses signed OAuth tokens. Instances are immutable and can be shared between threads;
+ * the parser and audience checker for each endpoint URI are created once and reused.
  */
 public class SignedOAuthTokenParser {
 
   private final VerifierProviders locators;
   private final NonceChecker nonceChecker;
   private final Clock clock;
+  private final ParserCache parsers;
 
   /**
    * Public constructor.
@@ -59,6 +61,8 @@ public class SignedOAuthTokenParser {
     this.locators = locators;
     this.nonceChecker = nonceChecker;
     this.clock = clock;
+    this.parsers = new ParserCache(
+        uri -> new JsonTokenParser(clock, locators, new SignedTokenAudienceChecker(uri)));
   }
 
   /**
@@ -117,7 +121,7 @@ public class SignedOAuthTokenParser {
    * @throws SignatureException if the signature (or anything else) doesn't check out.
    */
   public SignedOAuthToken parseToken(String tokenString, String method, String uri) throws Exception {
-    JsonTokenParser parser = new JsonTokenParser(clock, locators, new SignedTokenAudienceChecker(uri));
+    JsonTokenParser parser = parsers.get(uri);
 
     SignedOAuthToken token = new SignedOAuthToken(parser.verifyAndDeserialize(tokenString));
 
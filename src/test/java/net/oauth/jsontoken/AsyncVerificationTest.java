@@ -0,0 +1,113 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.VerificationResult.Reason;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.HmacSHA256Verifier;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.VerifierProvider;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+import net.oauth.jsontoken.metrics.RecorderTokenMetrics;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link JsonTokenParser#verifyAndDeserializeAsync(String)}.
+ */
+public class AsyncVerificationTest extends JsonTokenTestBase {
+
+    private FakeClock clock = new FakeClock(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicReference<Thread> lookupThread = new AtomicReference<Thread>();
+    private JsonTokenParser parser;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+        final List<Verifier> verifiers =
+                Collections.<Verifier>singletonList(new HmacSHA256Verifier(SYMMETRIC_KEY));
+        VerifierProviders providers = new VerifierProviders();
+        providers.setVerifierProvider(SignatureAlgorithm.HS256, new VerifierProvider() {
+            @Override
+            public List<Verifier> findVerifier(String issuer, String keyId) {
+                lookups.incrementAndGet();
+                lookupThread.set(Thread.currentThread());
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return verifiers;
+            }
+        });
+        parser = new JsonTokenParser(clock, providers, new IgnoreAudience());
+    }
+
+    private String createToken(long lifetimeInSeconds) throws Exception {
+        HmacSHA256Signer signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+        JsonToken token = new JsonToken(signer, clock);
+        token.setIssuedAt(clock.now());
+        token.setExpiration(clock.now().plusSeconds(lifetimeInSeconds));
+        return token.serializeAndSign();
+    }
+
+    public void testLookupRunsOffCallerThreadAndIsShared() throws Exception {
+        CompletableFuture<JsonToken> first = parser.verifyAndDeserializeAsync(createToken(600));
+        CompletableFuture<JsonToken> second = parser.verifyAndDeserializeAsync(createToken(601));
+        assertFalse(first.isDone());
+
+        release.countDown();
+        assertEquals("google.com", first.get(10, TimeUnit.SECONDS).getIssuer());
+        assertEquals("google.com", second.get(10, TimeUnit.SECONDS).getIssuer());
+        assertNotSame(Thread.currentThread(), lookupThread.get());
+        assertEquals(1, lookups.get());
+    }
+
+    public void testBadSignatureCompletesExceptionally() throws Exception {
+        release.countDown();
+        String token = createToken(600);
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+        try {
+            parser.verifyAndDeserializeAsync(tampered).get(10, TimeUnit.SECONDS);
+            fail("expected bad signature");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SignatureException);
+        }
+    }
+
+    public void testMalformedTokenFailsWithoutLookup() throws Exception {
+        CompletableFuture<JsonToken> future = parser.verifyAndDeserializeAsync("not a token");
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, lookups.get());
+    }
+
+    public void testRejectionsAreRecorded() throws Exception {
+        RecorderTokenMetrics metrics = new RecorderTokenMetrics(name -> null);
+        parser.setMetrics(metrics);
+        parser.verifyAndDeserializeAsync("not a token");
+        assertEquals(1, metrics.getRejectionCount(Reason.BAD_FORMAT));
+
+        final CompletableFuture<List<Verifier>> failedFetch = new CompletableFuture<List<Verifier>>();
+        failedFetch.completeExceptionally(new IllegalStateException("key fetch failed"));
+        parser.getVerifierProviders().setAsyncVerifierProvider(SignatureAlgorithm.HS256,
+                (issuer, keyId) -> failedFetch);
+        try {
+            parser.verifyAndDeserializeAsync(createToken(600)).get(10, TimeUnit.SECONDS);
+            fail("expected failed key fetch");
+        } catch (ExecutionException e) {
+            assertEquals("key fetch failed", e.getCause().getMessage());
+        }
+        assertEquals(1, metrics.getRejectionCount(Reason.NO_VERIFIER));
+    }
+}
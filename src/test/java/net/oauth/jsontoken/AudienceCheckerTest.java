@@ -0,0 +1,101 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.AudienceChecker.Match;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.signatures.SignedJsonAssertionAudienceChecker;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link AudienceChecker}.
+ */
+public class AudienceCheckerTest extends JsonTokenTestBase {
+
+    private static Map<String, Object> payload(Object audience) {
+        Map<String, Object> payload = new LinkedHashMap<String, Object>();
+        payload.put(JsonToken.AUDIENCE, audience);
+        return payload;
+    }
+
+    private static boolean accepts(Checker checker, Object audience) {
+        try {
+            checker.check(payload(audience));
+            return true;
+        } catch (SignatureException e) {
+            return false;
+        }
+    }
+
+    public void testExactMatch() throws Exception {
+        List<String> audiences = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            audiences.add("https://api" + i + ".example.com/v1");
+        }
+        AudienceChecker checker = new AudienceChecker(Match.EXACT, audiences);
+        assertTrue(accepts(checker, "https://api7.example.com/v1"));
+        assertTrue(accepts(checker, "HTTPS://API499.example.COM/v1"));
+        assertFalse(accepts(checker, "https://api7.example.com/v2"));
+        assertFalse(accepts(checker, "https://api500.example.com/v1"));
+        assertFalse(accepts(checker, null));
+        assertFalse(accepts(checker, 42));
+    }
+
+    public void testArrayAudience() throws Exception {
+        AudienceChecker checker = new AudienceChecker("a", "b");
+        assertTrue(accepts(checker, Arrays.asList("x", "b")));
+        assertTrue(accepts(checker, Collections.singletonList("A")));
+        assertFalse(accepts(checker, Arrays.asList("x", "y")));
+        assertFalse(accepts(checker, Collections.emptyList()));
+    }
+
+    public void testOriginMatch() throws Exception {
+        AudienceChecker checker = new AudienceChecker(Match.ORIGIN,
+                Arrays.asList("https://www.example.com/api", "http://localhost:8080"));
+        assertTrue(accepts(checker, "https://WWW.example.com"));
+        assertTrue(accepts(checker, "https://www.example.com/other?x=1"));
+        assertTrue(accepts(checker, "http://localhost:8080#top"));
+        assertFalse(accepts(checker, "http://www.example.com/api"));
+        assertFalse(accepts(checker, "https://www.example.com:8443/api"));
+        assertFalse(accepts(checker, "www.example.com"));
+        assertFalse(accepts(checker, "https://"));
+        try {
+            new AudienceChecker(Match.ORIGIN, Collections.singletonList("/relative"));
+            fail("expected relative URI to be rejected");
+        } catch (IllegalArgumentException expected) { }
+
+        // the signed assertion checker compares scheme and authority only
+        Checker assertion = new SignedJsonAssertionAudienceChecker("http://www.example.com/a/b");
+        assertTrue(accepts(assertion, Arrays.asList("other", "HTTP://www.example.com/c")));
+        assertFalse(accepts(assertion, "https://www.example.com/a/b"));
+    }
+
+    public void testArrayAudienceInToken() throws Exception {
+        FakeClock clock = new FakeClock(1);
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+        JsonToken token = new JsonToken(new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY), clock);
+        token.getPayload().put(JsonToken.AUDIENCE, Arrays.asList("http://a.com", "http://b.com"));
+        String tokenString = token.serializeAndSign();
+
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new AudienceChecker("http://b.com"));
+        JsonToken verified = parser.verifyAndDeserialize(tokenString);
+        assertNull(verified.getAudience());
+        assertEquals(Arrays.asList("http://a.com", "http://b.com"), verified.getAudiences());
+
+        JsonTokenClaims claims = parser.verifyAndDeserialize(tokenString, JsonTokenClaims.class);
+        assertNull(claims.getAudience());
+        assertEquals(Arrays.asList("http://a.com", "http://b.com"), claims.getAudiences());
+
+        parser = new JsonTokenParser(clock, locators, new AudienceChecker("http://c.com"));
+        try {
+            parser.verifyAndDeserialize(tokenString, JsonTokenClaims.class);
+            fail("expected wrong audience to be rejected");
+        } catch (SignatureException expected) { }
+    }
+}
@@ -0,0 +1,39 @@
+package net.oauth.jsontoken;
+
+import junit.framework.TestCase;
+import org.apache.commons.codec.binary.Base64;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that {@link Base64Url} decodes exactly like commons-codec.
+ */
+public class Base64UrlTest extends TestCase {
+
+    public void testDecodeMatchesCommonsCodec() {
+        Random random = new Random(42);
+        for (int length = 0; length < 300; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String urlSafe = Base64.encodeBase64URLSafeString(data);
+            String standard = new String(Base64.encodeBase64(data));
+            assertTrue(Arrays.equals(data, Base64Url.decodeToArray(urlSafe, 0, urlSafe.length())));
+            assertTrue(Arrays.equals(data, Base64Url.decodeToArray(standard, 0, standard.length())));
+        }
+    }
+
+    public void testDecodeRangeSkipsInvalidCharacters() {
+        String source = "xx.eyJ&&&hbGciOiJIUzI1NiJ9.yy";
+        String segment = "eyJ&&&hbGciOiJIUzI1NiJ9";
+        byte[] expected = Base64.decodeBase64(segment);
+        assertTrue(Arrays.equals(expected, Base64Url.decodeToArray(source, 3, 3 + segment.length())));
+    }
+
+    public void testBufferGrows() {
+        byte[] small = Base64Url.buffer(8);
+        byte[] large = Base64Url.buffer(small.length * 4);
+        assertTrue(large.length >= small.length * 3);
+        assertSame(large, Base64Url.buffer(8));
+    }
+}
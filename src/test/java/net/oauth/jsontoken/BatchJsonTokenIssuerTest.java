@@ -0,0 +1,138 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Signer;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for {@link BatchJsonTokenIssuer}.
+ */
+public class BatchJsonTokenIssuerTest extends JsonTokenTestBase {
+
+    private FakeClock clock = new FakeClock(1);
+    private ExecutorService executor;
+    private HmacSHA256Signer signer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+        signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+    private static Map<String, Object> claims(int i) {
+        Map<String, Object> claims = new LinkedHashMap<String, Object>();
+        claims.put("sub", "device-" + i);
+        claims.put(JsonToken.EXPIRATION, 1276669722L + 600);
+        return claims;
+    }
+
+    public void testIssueAllMatchesJsonToken() throws Exception {
+        List<Map<String, Object>> claims = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 1000; i++) {
+            claims.add(claims(i));
+        }
+        BatchJsonTokenIssuer issuer = new BatchJsonTokenIssuer(signer, clock, executor, 7, 4);
+        List<String> tokens = issuer.issueAll(claims);
+        assertEquals(1000, tokens.size());
+        for (int i = 0; i < 1000; i += 97) {
+            JsonToken token = new JsonToken(signer, clock);
+            token.getPayload().putAll(claims(i));
+            assertEquals(token.serializeAndSign(), tokens.get(i));
+        }
+        assertTrue(issuer.issueAll(Collections.<Map<String, Object>>emptyList()).isEmpty());
+    }
+
+    public void testIteratorReadsClaimsLazily() throws Exception {
+        final AtomicInteger read = new AtomicInteger();
+        Iterator<Map<String, Object>> claims = new Iterator<Map<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+                return read.get() < 10000;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return claims(read.getAndIncrement());
+            }
+        };
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        Iterator<String> tokens =
+                new BatchJsonTokenIssuer(signer, clock, executor, 10, 3).issueAll(claims);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(tokens.hasNext());
+            if (i % 1000 == 0) {
+                // the chunk being consumed plus the window of three
+                assertTrue(read.get() <= i + 40);
+                JsonToken token = parser.verifyAndDeserialize(tokens.next());
+                assertEquals("device-" + i, token.getParamAsString("sub"));
+            } else {
+                tokens.next();
+            }
+        }
+        assertFalse(tokens.hasNext());
+    }
+
+    public void testStream() throws Exception {
+        BatchJsonTokenIssuer issuer = new BatchJsonTokenIssuer(signer, clock, executor);
+        List<String> tokens = issuer.issueAll(IntStream.range(0, 300)
+                .mapToObj(BatchJsonTokenIssuerTest::claims)).collect(Collectors.toList());
+        assertEquals(300, tokens.size());
+        assertEquals(issuer.issueAll(Collections.singletonList(claims(299))).get(0), tokens.get(299));
+    }
+
+    public void testSigningFailure() throws Exception {
+        Signer failing = new Signer() {
+            @Override
+            public String getKeyId() {
+                return null;
+            }
+
+            @Override
+            public String getIssuer() {
+                return "google.com";
+            }
+
+            @Override
+            public SignatureAlgorithm getSignatureAlgorithm() {
+                return SignatureAlgorithm.HS256;
+            }
+
+            @Override
+            public byte[] sign(byte[] source) throws SignatureException {
+                throw new SignatureException("no key");
+            }
+        };
+        BatchJsonTokenIssuer issuer = new BatchJsonTokenIssuer(failing, clock, executor);
+        try {
+            issuer.issueAll(Collections.singletonList(claims(0)));
+            fail("expected signing to fail");
+        } catch (SignatureException expected) { }
+        try {
+            issuer.issueAll(Collections.singletonList(claims(0)).iterator()).next();
+            fail("expected signing to fail");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getCause() instanceof SignatureException);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.VerificationResult.Reason;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.HmacSHA256Verifier;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.VerifierProvider;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link BatchJsonTokenVerifier}.
+ */
+public class BatchJsonTokenVerifierTest extends JsonTokenTestBase {
+
+    private FakeClock clock = new FakeClock(1);
+    private AtomicInteger lookups = new AtomicInteger();
+    // how many more lookups for flaky.com fail
+    private AtomicInteger flakyFailures = new AtomicInteger();
+    private ExecutorService executor;
+    private JsonTokenParser parser;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+        final List<Verifier> verifiers =
+                Collections.<Verifier>singletonList(new HmacSHA256Verifier(SYMMETRIC_KEY));
+        VerifierProviders providers = new VerifierProviders();
+        providers.setVerifierProvider(SignatureAlgorithm.HS256, new VerifierProvider() {
+            @Override
+            public List<Verifier> findVerifier(String issuer, String keyId) {
+                lookups.incrementAndGet();
+                if ("flaky.com".equals(issuer) && flakyFailures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("key fetch failed");
+                }
+                return "unknown.com".equals(issuer) ? null : verifiers;
+            }
+        });
+        parser = new JsonTokenParser(clock, providers, new IgnoreAudience());
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+    private String createToken(String issuer, String keyId, long lifetimeInSeconds) throws Exception {
+        HmacSHA256Signer signer = new HmacSHA256Signer(issuer, keyId, SYMMETRIC_KEY);
+        JsonToken token = new JsonToken(signer, clock);
+        token.setIssuedAt(clock.now().minusSeconds(600));
+        token.setExpiration(clock.now().plusSeconds(lifetimeInSeconds));
+        return token.serializeAndSign();
+    }
+
+    public void testResultsInOrderWithReasons() throws Exception {
+        String valid = createToken("google.com", "key2", 600);
+        String expired = createToken("google.com", "key2", -600);
+        String unknownIssuer = createToken("unknown.com", "key2", 600);
+        String badSignature = valid.substring(0, valid.lastIndexOf('.') + 1) + "AAAA";
+        List<String> tokens = Arrays.asList(valid, "not a token", expired, unknownIssuer,
+                badSignature, JsonTokenTest.TOKEN_STRING.replace("eyJhbGciOiJIUzI1NiIsImtpZCI6ImtleTIifQ",
+                        JsonTokenUtil.convertToBase64("{\"alg\":\"XX256\"}")));
+
+        List<VerificationResult> results =
+                new BatchJsonTokenVerifier(parser, executor, 2).verifyAll(tokens);
+
+        assertEquals(tokens.size(), results.size());
+        assertTrue(results.get(0).isValid());
+        assertEquals("google.com", results.get(0).getToken().getIssuer());
+        assertEquals(Reason.BAD_FORMAT, results.get(1).getReason());
+        assertEquals(Reason.INVALID_TIME, results.get(2).getReason());
+        assertEquals(Reason.NO_VERIFIER, results.get(3).getReason());
+        assertEquals(Reason.BAD_SIGNATURE, results.get(4).getReason());
+        assertEquals(Reason.UNKNOWN_ALGORITHM, results.get(5).getReason());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.get(i), results.get(i).getTokenString());
+        }
+    }
+
+    public void testVerifierLookedUpOncePerGroup() throws Exception {
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            tokens.add(createToken("google.com", "key" + (i % 2), 600 + i));
+        }
+        List<VerificationResult> results =
+                new BatchJsonTokenVerifier(parser, executor, 4).verifyAll(tokens);
+        for (VerificationResult result : results) {
+            assertTrue(result.toString(), result.isValid());
+        }
+        assertEquals(2, lookups.get());
+    }
+
+    public void testStreamVerifiesLazilyAndInOrder() throws Exception {
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            tokens.add(createToken("google.com", "key2", 600 + i));
+        }
+        List<String> verified = new BatchJsonTokenVerifier(parser, executor)
+                .verifyAll(tokens.stream())
+                .map(VerificationResult::getTokenString)
+                .collect(Collectors.toList());
+        assertEquals(tokens, verified);
+        assertEquals(1, lookups.get());
+    }
+
+    public void testFailedLookupOnlyAffectsItsBatch() throws Exception {
+        flakyFailures.set(1);
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            tokens.add(createToken("flaky.com", "key2", 600 + i));
+        }
+        List<Reason> reasons = new ArrayList<Reason>();
+        Iterator<VerificationResult> results =
+                new BatchJsonTokenVerifier(parser, executor).verifyAll(tokens.iterator(), 2);
+        while (results.hasNext()) {
+            reasons.add(results.next().getReason());
+        }
+        assertEquals(Arrays.asList(Reason.NO_VERIFIER, Reason.NO_VERIFIER, null, null), reasons);
+        assertEquals(2, lookups.get());
+    }
+}
@@ -0,0 +1,80 @@
+package net.oauth.jsontoken;
+
+import junit.framework.TestCase;
+
+import java.time.Instant;
+
+/**
+ * Tests for {@link CachedClock} and the epoch-second interval check of {@link SystemClock}.
+ */
+public class CachedClockTest extends TestCase {
+
+    public void testEpochSecondIntervalMatchesInstantInterval() {
+        FakeClock clock = new FakeClock(1);
+        clock.setNow(Instant.ofEpochMilli(1276669722500L));
+        long now = 1276669722L;
+        long[][] intervals = {
+                {now - 10, now + 10}, {now + 60, now + 120}, {now + 61, now + 120},
+                {now - 120, now - 60}, {now - 120, now - 61}, {now - 120, now - 59},
+                {now, now}, {0, now}};
+        for (long[] interval : intervals) {
+            assertEquals(interval[0] + ".." + interval[1],
+                    clock.isCurrentTimeInInterval(Instant.ofEpochSecond(interval[0]),
+                            Instant.ofEpochSecond(interval[1])),
+                    clock.isCurrentTimeInInterval(interval[0], interval[1]));
+        }
+        // a missing exp is passed as Long.MAX_VALUE
+        assertTrue(clock.isCurrentTimeInInterval(0, Long.MAX_VALUE));
+        assertTrue(clock.isCurrentTimeInInterval(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    public void testSubclassesThatOverrideNowAreHonoured() throws Exception {
+        // FakeClock only overrides now()
+        FakeClock clock = new FakeClock(0);
+        clock.setNow(Instant.ofEpochSecond(1000));
+        assertEquals(1000000, clock.currentTimeMillis());
+        assertTrue(clock.isCurrentTimeInInterval(999, 1001));
+        assertFalse(clock.isCurrentTimeInInterval(1001, 1002));
+
+        // nor may the primitive check bypass an overridden Instant check
+        SystemClock strict = new SystemClock() {
+            @Override
+            public boolean isCurrentTimeInInterval(Instant start, Instant end) {
+                return false;
+            }
+        };
+        assertFalse(strict.isCurrentTimeInInterval(0, Long.MAX_VALUE));
+
+        // the same goes for CachedClock subclasses
+        CachedClock fixed = new CachedClock(1000, 0) {
+            @Override
+            public Instant now() {
+                return Instant.ofEpochSecond(1000);
+            }
+        };
+        try {
+            assertEquals(1000000, fixed.currentTimeMillis());
+            assertTrue(fixed.isCurrentTimeInInterval(999, 1001));
+        } finally {
+            fixed.close();
+        }
+    }
+
+    public void testCachedClockTicks() throws Exception {
+        CachedClock clock = new CachedClock(1, 0);
+        try {
+            long before = System.currentTimeMillis();
+            Thread.sleep(50);
+            long ticked = clock.currentTimeMillis();
+            assertTrue(ticked >= before);
+            assertTrue(ticked <= System.currentTimeMillis());
+            assertEquals(ticked, clock.now().toEpochMilli(), 1000);
+            assertTrue(clock.isCurrentTimeInInterval(ticked / 1000 - 1, ticked / 1000 + 1));
+        } finally {
+            clock.close();
+        }
+        long stopped = clock.currentTimeMillis();
+        Thread.sleep(20);
+        assertEquals(stopped, clock.currentTimeMillis());
+    }
+}
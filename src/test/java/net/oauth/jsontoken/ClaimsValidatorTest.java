@@ -0,0 +1,98 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link ClaimsValidator}.
+ */
+public class ClaimsValidatorTest extends JsonTokenTestBase {
+
+    private final ClaimsValidator validator = ClaimsValidator.builder()
+            .oneOf("iss", Arrays.asList("google.com", "example.com"))
+            .contains("scope", "read")
+            .contains("roles", "admin")
+            .equalTo("user.tenant", "acme")
+            .matches("user.email", "[^@]+@acme\\.com")
+            .range("ver", 2, 3)
+            .require("jti")
+            .satisfies("user.id", value -> value instanceof Number, "must be a number")
+            .build();
+
+    private Map<String, Object> payload() {
+        Map<String, Object> user = new LinkedHashMap<String, Object>();
+        user.put("tenant", "acme");
+        user.put("email", "someone@acme.com");
+        user.put("id", 7);
+        Map<String, Object> payload = new LinkedHashMap<String, Object>();
+        payload.put("iss", "google.com");
+        payload.put("scope", "write read");
+        payload.put("roles", Arrays.asList("user", "admin"));
+        payload.put("user", user);
+        payload.put("ver", 2.0);
+        payload.put("jti", "id-1");
+        return payload;
+    }
+
+    public void testValidPayload() throws Exception {
+        assertTrue(validator.validate(payload()).isEmpty());
+        validator.check(payload());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testReportsAllFailures() throws Exception {
+        Map<String, Object> payload = payload();
+        payload.put("iss", "evil.com");
+        payload.put("scope", "readonly");
+        payload.put("ver", 4L);
+        payload.remove("jti");
+        ((Map<String, Object>) payload.get("user")).put("email", "someone@evil.com");
+
+        List<String> failures = validator.validate(payload);
+        assertEquals(Arrays.asList(
+                "iss must be one of [google.com, example.com]",
+                "scope must contain read",
+                "user.email must match [^@]+@acme\\.com",
+                "ver must be between 2 and 3",
+                "jti is missing"), failures);
+        try {
+            validator.check(payload);
+            fail("expected invalid claims to be rejected");
+        } catch (SignatureException expected) {
+            assertTrue(expected.getMessage().contains("jti is missing"));
+        }
+
+        payload.put("user", "not an object");
+        assertTrue(validator.validate(payload).contains("user is not an object"));
+    }
+
+    public void testInvalidPath() {
+        try {
+            ClaimsValidator.builder().require("user..id");
+            fail("expected invalid path to be rejected");
+        } catch (IllegalArgumentException expected) { }
+    }
+
+    public void testAsParserChecker() throws Exception {
+        FakeClock clock = new FakeClock(1);
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+        JsonToken token = new JsonToken(new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY), clock);
+        token.getPayload().putAll(payload());
+        String tokenString = token.serializeAndSign();
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, validator);
+        assertEquals("google.com", parser.verifyAndDeserialize(tokenString).getIssuer());
+
+        parser = new JsonTokenParser(clock, locators,
+                ClaimsValidator.builder().equalTo("iss", "example.com").build());
+        try {
+            parser.verifyAndDeserialize(tokenString);
+            fail("expected wrong issuer to be rejected");
+        } catch (SignatureException expected) { }
+    }
+}
@@ -28,4 +28,9 @@ public class IgnoreAudience implements Checker {
   public void check(Map<String, Object> payload) throws SignatureException {
     // don't throw - allow anything
   }
+
+  @Override
+  public void check(JsonTokenClaims claims) throws SignatureException {
+    // don't throw - allow anything
+  }
 }
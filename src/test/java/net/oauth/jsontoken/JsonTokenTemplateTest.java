@@ -0,0 +1,109 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.RsaSHA256Signer;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link JsonTokenTemplate}.
+ */
+public class JsonTokenTemplateTest extends JsonTokenTestBase {
+
+    private FakeClock clock = new FakeClock(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+    }
+
+    private Map<String, Object> user() {
+        Map<String, Object> user = new LinkedHashMap<String, Object>();
+        user.put("email", "someone@example.com");
+        user.put("roles", Collections.singletonList("admin"));
+        return user;
+    }
+
+    public void testSameTokenAsJsonToken() throws Exception {
+        HmacSHA256Signer signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+        Map<String, Object> staticClaims = new LinkedHashMap<String, Object>();
+        staticClaims.put(JsonToken.AUDIENCE, "http://www.google.com");
+        staticClaims.put("typ", "google.com/auth/v1");
+        JsonTokenTemplate template = new JsonTokenTemplate(signer, staticClaims);
+
+        JsonToken token = new JsonToken(signer, clock);
+        token.setAudience("http://www.google.com");
+        token.setParam("typ", "google.com/auth/v1");
+        token.setIssuedAt(clock.now());
+        token.setExpiration(clock.now().plusSeconds(600));
+        token.getPayload().put("user", user());
+
+        Map<String, Object> claims = new LinkedHashMap<String, Object>();
+        claims.put("user", user());
+        String issued = template.issue(clock.now(), clock.now().plusSeconds(600), claims);
+        assertEquals(token.serializeAndSign(), issued);
+        assertEquals(issued.substring(0, issued.indexOf('.')), template.getHeaderSegment());
+
+        JsonToken verified = new JsonTokenParser(clock, locators, new IgnoreAudience())
+                .verifyAndDeserialize(issued);
+        assertEquals("google.com", verified.getIssuer());
+        assertEquals(clock.now().plusSeconds(600), verified.getExpiration());
+    }
+
+    public void testWithoutStaticOrDynamicClaims() throws Exception {
+        RsaSHA256Signer signer = new RsaSHA256Signer(null, "key1", privateKey);
+        JsonTokenTemplate template =
+                new JsonTokenTemplate(signer, Collections.<String, Object>emptyMap());
+
+        assertEquals(new JsonToken(signer, clock).serializeAndSign(),
+                template.issue(Collections.<String, Object>emptyMap()));
+
+        JsonToken token = new JsonToken(signer, clock);
+        token.setExpiration(clock.now());
+        token.setParam("bar", 15);
+        assertEquals(token.serializeAndSign(), template.issue(null, clock.now(),
+                Collections.<String, Object>singletonMap("bar", 15)));
+    }
+
+    public void testRejectsRepeatedClaims() throws Exception {
+        HmacSHA256Signer signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+        JsonTokenTemplate template =
+                new JsonTokenTemplate(signer, Collections.<String, Object>singletonMap("typ", "a"));
+        assertEquals("google.com", template.getStaticClaims().get(JsonToken.ISSUER));
+        try {
+            template.issue(Collections.<String, Object>singletonMap(JsonToken.ISSUER, "other.com"));
+            fail("expected repeated iss to be rejected");
+        } catch (IllegalArgumentException expected) { }
+        try {
+            template.issue(clock.now(), null, Collections.<String, Object>singletonMap(JsonToken.ISSUED_AT, 1));
+            fail("expected repeated iat to be rejected");
+        } catch (IllegalArgumentException expected) { }
+    }
+
+    public void testFailedIssueDoesNotLeakIntoNextToken() throws Exception {
+        HmacSHA256Signer signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+        JsonTokenTemplate template = new JsonTokenTemplate(signer,
+                Collections.<String, Object>singletonMap(JsonToken.AUDIENCE, "abc"));
+        try {
+            // Jackson can't serialize a plain Object; the static claims leave a byte pending
+            template.issue(Collections.<String, Object>singletonMap("x", new Object()));
+            fail("expected unserializable claim to be rejected");
+        } catch (IllegalArgumentException expected) { }
+
+        JsonToken token = new JsonToken(signer, clock);
+        token.setAudience("abc");
+        token.setParam("x", "y");
+        assertEquals(token.serializeAndSign(),
+                template.issue(Collections.<String, Object>singletonMap("x", "y")));
+    }
+
+    public void testJwtUtilRoundTrip() throws Exception {
+        String jwt = JwtUtil.getJwt(user());
+        assertEquals(JwtUtil.createToken(user()).serializeAndSign(), jwt);
+        assertEquals("networknt.com", JwtUtil.VerifyAndDeserialize(jwt).getIssuer());
+    }
+}
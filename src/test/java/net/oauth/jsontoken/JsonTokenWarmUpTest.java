@@ -0,0 +1,92 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+import net.oauth.jsontoken.metrics.TokenMetrics;
+
+import java.security.SignatureException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link JsonTokenWarmUp}.
+ */
+public class JsonTokenWarmUpTest extends JsonTokenTestBase {
+
+    public void testWarmUp() throws Exception {
+        FakeClock clock = new FakeClock(1);
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        final AtomicInteger recorded = new AtomicInteger();
+        parser.setMetrics(new TokenMetrics() {
+            @Override
+            public void recordStage(Stage stage, long nanos) {
+                recorded.incrementAndGet();
+            }
+        });
+
+        JsonTokenWarmUp.Report report = new JsonTokenWarmUp(parser)
+                .addKey(SignatureAlgorithm.RS256, "google.com", "key1")
+                .addKey(SignatureAlgorithm.HS256, "google.com", null)
+                .setIterations(20)
+                .run();
+        assertTrue(report.toString(), report.isSuccessful());
+        assertEquals(2, report.getResolvedKeyCount());
+        assertEquals(40, report.getCycleCount());
+        assertEquals(report.getKeyLookupDuration().plus(report.getCycleDuration()), report.getDuration());
+        assertTrue(report.getDuration().compareTo(Duration.ZERO) > 0);
+        // the synthetic tokens go through a separate parser
+        assertEquals(0, recorded.get());
+    }
+
+    public void testRunsResolvedVerifiers() throws Exception {
+        // the RSA verifier only hands signatures as long as its modulus to its engine
+        final Verifier rsa = locators.getVerifierProvider(SignatureAlgorithm.RS256)
+                .findVerifier("google.com", "key1").get(0);
+        final List<Integer> lengths = new CopyOnWriteArrayList<Integer>();
+        final Verifier recording = new Verifier() {
+            @Override
+            public void verifySignature(byte[] source, byte[] signature) throws SignatureException {
+                if (!verify(source, signature)) {
+                    throw new SignatureException("signature did not verify");
+                }
+            }
+
+            @Override
+            public boolean verify(byte[] source, byte[] signature) {
+                lengths.add(signature.length);
+                return rsa.verify(source, signature);
+            }
+        };
+        VerifierProviders providers = new VerifierProviders();
+        providers.setVerifierProvider(SignatureAlgorithm.RS256,
+                (issuer, keyId) -> Collections.singletonList(recording));
+        JsonTokenParser parser = new JsonTokenParser(providers, new IgnoreAudience());
+        JsonTokenWarmUp.Report report = new JsonTokenWarmUp(parser)
+                .addKey(SignatureAlgorithm.RS256, "google.com", "key1")
+                .setIterations(0)
+                .run();
+        assertTrue(report.toString(), report.isSuccessful());
+        // the 2048 bit test key signs 256 bytes
+        assertTrue(lengths.toString(), lengths.contains(256));
+    }
+
+    public void testReportsMissingKeys() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(locators, new IgnoreAudience());
+        JsonTokenWarmUp.Report report = new JsonTokenWarmUp(parser)
+                .addKey(SignatureAlgorithm.ES256, "example.com", "ec1")
+                .addKey(SignatureAlgorithm.HS1, "example.com", null)
+                .setIterations(5)
+                .run();
+        assertFalse(report.isSuccessful());
+        assertEquals(0, report.getResolvedKeyCount());
+        // two missing providers, and no synthetic signer for HS1
+        assertEquals(report.getFailures().toString(), 3, report.getFailures().size());
+        assertTrue(report.toString().contains("failures"));
+    }
+}
@@ -0,0 +1,58 @@
+package net.oauth.jsontoken;
+
+import junit.framework.TestCase;
+import org.apache.commons.codec.binary.Base64;
+
+import java.util.Random;
+
+/**
+ * Tests for {@link TokenBuffer}.
+ */
+public class TokenBufferTest extends TestCase {
+
+    public void testBase64UrlMatchesCommonsCodec() throws Exception {
+        Random random = new Random(42);
+        for (int length = 0; length < 100; length++) {
+            byte[] source = new byte[length];
+            random.nextBytes(source);
+            TokenBuffer buffer = new TokenBuffer(4);
+            buffer.writeBase64Url(source, 0, length);
+            assertEquals(Base64.encodeBase64URLSafeString(source), buffer.toAsciiString());
+
+            // the same bytes written in uneven pieces
+            buffer.reset();
+            TokenBuffer.Base64UrlEncoder encoder = buffer.base64UrlEncoder();
+            for (int from = 0; from < length; from += 1 + from % 5) {
+                int to = Math.min(length, from + 1 + from % 5);
+                if (to - from == 1) {
+                    encoder.write(source[from]);
+                } else {
+                    encoder.write(source, from, to - from);
+                }
+            }
+            encoder.finish();
+            assertEquals(Base64.encodeBase64URLSafeString(source), buffer.toAsciiString());
+        }
+    }
+
+    public void testSegmentsAndAscii() throws Exception {
+        TokenBuffer buffer = new TokenBuffer(1);
+        buffer.writeAscii("abé");
+        buffer.write('.');
+        buffer.writeBase64Url(new byte[] {(byte) 0xfb, (byte) 0xff}, 0, 2);
+        assertEquals("ab?.-_8", buffer.toAsciiString());
+
+        StringBuilder appended = new StringBuilder("x");
+        buffer.writeTo(appended);
+        assertEquals("xab?.-_8", appended.toString());
+    }
+
+    public void testResetDiscardsUnfinishedSegment() throws Exception {
+        TokenBuffer buffer = TokenBuffer.get();
+        buffer.base64UrlEncoder().write(new byte[] {1, 2}, 0, 2);
+        buffer = TokenBuffer.get();
+        buffer.writeBase64Url(new byte[] {(byte) 0xfb, (byte) 0xff}, 0, 2);
+        assertEquals("-_8", buffer.toAsciiString());
+        buffer.release();
+    }
+}
@@ -0,0 +1,140 @@
+package net.oauth.jsontoken;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link JsonTokenParser#verifyAndDeserialize(String, Class)}.
+ */
+public class TypedClaimsTest extends JsonTokenTestBase {
+
+    public static class User {
+        public String email;
+        public List<String> roles;
+    }
+
+    public static class UserClaims extends JsonTokenClaims {
+        @JsonProperty("user")
+        private User user;
+
+        public User getUser() {
+            return user;
+        }
+    }
+
+    private FakeClock clock = new FakeClock(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+    }
+
+    private String createToken(long lifetimeInSeconds) throws Exception {
+        JsonToken token = new JsonToken(new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY), clock);
+        token.setAudience("http://www.google.com");
+        token.setIssuedAt(clock.now().minusSeconds(60));
+        token.setExpiration(clock.now().plusSeconds(lifetimeInSeconds));
+        Map<String, Object> user = new LinkedHashMap<String, Object>();
+        user.put("email", "someone@example.com");
+        user.put("roles", Arrays.asList("admin", "user"));
+        token.getPayload().put("user", user);
+        token.setParam("unmapped", "ignored");
+        return token.serializeAndSign();
+    }
+
+    public void testBindsClaims() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        UserClaims claims = parser.verifyAndDeserialize(createToken(600), UserClaims.class);
+        assertEquals("google.com", claims.getIssuer());
+        assertEquals("http://www.google.com", claims.getAudience());
+        assertEquals(clock.now().minusSeconds(60).getEpochSecond(), claims.getIssuedAt());
+        assertEquals(clock.now().plusSeconds(600).getEpochSecond(), claims.getExpiration());
+        assertEquals("someone@example.com", claims.getUser().email);
+        assertEquals(Arrays.asList("admin", "user"), claims.getUser().roles);
+    }
+
+    public void testMissingTimesAreAbsent() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        String token = new JsonToken(new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY), clock)
+                .serializeAndSign();
+        JsonTokenClaims claims = parser.verifyAndDeserialize(token, JsonTokenClaims.class);
+        assertEquals(JsonTokenClaims.ABSENT, claims.getIssuedAt());
+        assertEquals(JsonTokenClaims.ABSENT, claims.getExpiration());
+    }
+
+    public void testNonNumericTimesAreRejected() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        Object[][] claims = {
+                {JsonToken.EXPIRATION, "1000"}, {JsonToken.EXPIRATION, null},
+                {JsonToken.ISSUED_AT, null}, {JsonToken.ISSUED_AT, true}};
+        for (Object[] claim : claims) {
+            JsonToken token = new JsonToken(new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY), clock);
+            token.getPayload().put((String) claim[0], claim[1]);
+            String tokenString = token.serializeAndSign();
+            String description = claim[0] + "=" + claim[1];
+            try {
+                parser.verifyAndDeserialize(tokenString);
+                fail("expected " + description + " to be rejected");
+            } catch (IllegalStateException expected) { }
+            try {
+                parser.verifyAndDeserialize(tokenString, JsonTokenClaims.class);
+                fail("expected typed " + description + " to be rejected");
+            } catch (IllegalStateException expected) { }
+            assertEquals(description, VerificationResult.Reason.INVALID_TIME,
+                    parser.verifyToken(tokenString).getReason());
+        }
+    }
+
+    public void testExpiredToken() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        String token = createToken(600);
+        clock.setNow(clock.now().plusSeconds(3600));
+        try {
+            parser.verifyAndDeserialize(token, UserClaims.class);
+            fail("expected expired token to be rejected");
+        } catch (IllegalStateException expected) { }
+    }
+
+    public void testBadSignature() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        String token = createToken(600);
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+        try {
+            parser.verifyAndDeserialize(tampered, UserClaims.class);
+            fail("expected bad signature");
+        } catch (SignatureException expected) { }
+    }
+
+    public void testCheckersSeeTypedClaims() throws Exception {
+        String token = createToken(600);
+        JsonTokenParser parser = new JsonTokenParser(clock, locators,
+                new net.oauth.signatures.SignedTokenAudienceChecker("http://www.google.com"));
+        assertEquals("google.com", parser.verifyAndDeserialize(token, UserClaims.class).getIssuer());
+
+        parser = new JsonTokenParser(clock, locators,
+                new net.oauth.signatures.SignedTokenAudienceChecker("http://www.example.com"));
+        try {
+            parser.verifyAndDeserialize(token, UserClaims.class);
+            fail("expected wrong audience to be rejected");
+        } catch (SignatureException expected) { }
+
+        // a checker that only implements the map form sees the claims the class binds
+        parser = new JsonTokenParser(clock, locators, new Checker() {
+            @Override
+            public void check(Map<String, Object> payload) throws SignatureException {
+                assertEquals("http://www.google.com", payload.get(JsonToken.AUDIENCE));
+                assertTrue(payload.get(JsonToken.EXPIRATION) instanceof Number);
+                assertFalse(payload.containsKey("unmapped"));
+            }
+        });
+        parser.verifyAndDeserialize(token, UserClaims.class);
+    }
+}
@@ -0,0 +1,107 @@
+package net.oauth.jsontoken;
+
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Tests for {@link VerifiedTokenCache} and its use by {@link JsonTokenParser}.
+ */
+public class VerifiedTokenCacheTest extends JsonTokenTestBase {
+
+    private FakeClock clock = new FakeClock(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock.setNow(Instant.ofEpochSecond(1276669722L));
+    }
+
+    private String createToken(String subject, long lifetimeInSeconds) throws Exception {
+        HmacSHA256Signer signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+        JsonToken token = new JsonToken(signer, clock);
+        token.setParam("sub", subject);
+        token.setIssuedAt(clock.now());
+        token.setExpiration(clock.now().plusSeconds(lifetimeInSeconds));
+        return token.serializeAndSign();
+    }
+
+    public void testRepeatedTokenIsServedFromCache() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        VerifiedTokenCache cache = new VerifiedTokenCache();
+        parser.setVerifiedTokenCache(cache);
+
+        String tokenString = createToken("alice", 600);
+        JsonToken first = parser.verifyAndDeserialize(tokenString);
+        JsonToken second = parser.verifyAndDeserialize(tokenString);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testCacheBelongsToOneParser() throws Exception {
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        VerifiedTokenCache cache = new VerifiedTokenCache();
+        parser.setVerifiedTokenCache(cache);
+        parser.setVerifiedTokenCache(cache);
+        String tokenString = createToken("alice", 600);
+        parser.verifyAndDeserialize(tokenString);
+
+        // a parser that knows none of the keys must not be handed the verified token
+        JsonTokenParser other = new JsonTokenParser(clock, new VerifierProviders(), new IgnoreAudience());
+        try {
+            other.setVerifiedTokenCache(cache);
+            fail("expected cache to be rejected");
+        } catch (IllegalStateException expected) { }
+        assertNull(other.getVerifiedTokenCache());
+        assertFalse(other.verifyToken(tokenString).isValid());
+    }
+
+    public void testCheckersRunOnCacheHit() throws Exception {
+        final int[] checks = new int[1];
+        Checker counting = new Checker() {
+            @Override
+            public void check(Map<String, Object> payload) throws SignatureException {
+                if (++checks[0] > 1) {
+                    throw new SignatureException("rejected on second use");
+                }
+            }
+        };
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, counting);
+        parser.setVerifiedTokenCache(new VerifiedTokenCache());
+
+        String tokenString = createToken("alice", 600);
+        parser.verifyAndDeserialize(tokenString);
+        try {
+            parser.verifyAndDeserialize(tokenString);
+            fail("checker should have run on the cached token");
+        } catch (SignatureException expected) {
+        }
+    }
+
+    public void testEntryExpiresWithToken() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache();
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        String tokenString = createToken("alice", 60);
+        JsonToken token = parser.verifyAndDeserialize(tokenString);
+
+        cache.put(tokenString, token, clock.now());
+        assertNotNull(cache.get(tokenString, clock.now().plusSeconds(59)));
+        assertNull(cache.get(tokenString, clock.now().plusSeconds(60)));
+        assertEquals(0, cache.size());
+    }
+
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(16, 3600);
+        JsonTokenParser parser = new JsonTokenParser(clock, locators, new IgnoreAudience());
+        for (int i = 0; i < 100; i++) {
+            String tokenString = createToken("user" + i, 600);
+            cache.put(tokenString, parser.deserialize(tokenString), clock.now());
+        }
+        assertTrue(cache.size() <= 16);
+    }
+}
@@ -0,0 +1,152 @@
+package net.oauth.jsontoken.crypto;
+
+import junit.framework.TestCase;
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.discovery.VerifierProviders;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the ES256 and Ed25519 signers and verifiers.
+ */
+public class EllipticCurveSignerTest extends TestCase {
+  private static final byte[] SOURCE = "randomdatatobesignedfortest".getBytes();
+
+  private static KeyPair ecKeyPair(String curve) throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec(curve));
+    return generator.generateKeyPair();
+  }
+
+  public void testEs256RoundTrip() throws Exception {
+    KeyPair keyPair = ecKeyPair("secp256r1");
+    EcdsaSHA256Signer signer =
+        new EcdsaSHA256Signer("test", "test-key", (ECPrivateKey) keyPair.getPrivate());
+    EcdsaSHA256Verifier verifier = new EcdsaSHA256Verifier(keyPair.getPublic());
+
+    Signature der = Signature.getInstance("SHA256withECDSA");
+    der.initVerify(keyPair.getPublic());
+    // enough signatures to hit r and s values with leading zero bytes
+    for (int i = 0; i < 300; i++) {
+      byte[] signature = signer.sign(SOURCE);
+      assertEquals(64, signature.length);
+      assertTrue(verifier.verify(SOURCE, signature));
+      der.update(SOURCE);
+      assertTrue(der.verify(EcdsaSignatures.rawToDer(signature)));
+      assertTrue(Arrays.equals(signature,
+          EcdsaSignatures.derToRaw(EcdsaSignatures.rawToDer(signature), 32)));
+    }
+
+    byte[] signature = signer.sign(SOURCE);
+    assertFalse(verifier.verify(SOURCE, Arrays.copyOf(signature, 63)));
+    assertFalse(verifier.verify(SOURCE, null));
+    signature[10] ^= 1;
+    assertFalse(verifier.verify(SOURCE, signature));
+    assertFalse(verifier.verify(SOURCE, new byte[64]));
+  }
+
+  public void testEs256RejectsOtherCurves() throws Exception {
+    try {
+      new EcdsaSHA256Signer("test", "test-key", (ECPrivateKey) ecKeyPair("secp384r1").getPrivate());
+      fail("expected P-384 key to be rejected");
+    } catch (java.security.InvalidKeyException expected) { }
+  }
+
+  public void testEs256RejectsOther256BitCurves() throws Exception {
+    // secp256k1 shares P-256's field size but not its curve
+    final ECParameterSpec secp256k1 = new ECParameterSpec(
+        new EllipticCurve(
+            new ECFieldFp(new BigInteger(
+                "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16)),
+            BigInteger.ZERO, BigInteger.valueOf(7)),
+        new ECPoint(
+            new BigInteger("79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798", 16),
+            new BigInteger("483ADA7726A3C4655DA4FBFC0E1108A8FD17B448A68554199C47D08FFB10D4B8", 16)),
+        new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141", 16),
+        1);
+    ECPrivateKey privateKey = new ECPrivateKey() {
+      @Override public BigInteger getS() { return BigInteger.ONE; }
+      @Override public ECParameterSpec getParams() { return secp256k1; }
+      @Override public String getAlgorithm() { return "EC"; }
+      @Override public String getFormat() { return null; }
+      @Override public byte[] getEncoded() { return null; }
+    };
+    ECPublicKey publicKey = new ECPublicKey() {
+      @Override public ECPoint getW() { return secp256k1.getGenerator(); }
+      @Override public ECParameterSpec getParams() { return secp256k1; }
+      @Override public String getAlgorithm() { return "EC"; }
+      @Override public String getFormat() { return null; }
+      @Override public byte[] getEncoded() { return null; }
+    };
+    try {
+      new EcdsaSHA256Signer("test", "test-key", privateKey);
+      fail("expected secp256k1 key to be rejected");
+    } catch (java.security.InvalidKeyException expected) { }
+    try {
+      new EcdsaSHA256Verifier(publicKey);
+      fail("expected secp256k1 key to be rejected");
+    } catch (IllegalStateException expected) { }
+    try {
+      new EcdsaSHA256Verifier(ecKeyPair("secp384r1").getPublic());
+      fail("expected P-384 key to be rejected");
+    } catch (IllegalStateException expected) { }
+  }
+
+  public void testEd25519RoundTrip() throws Exception {
+    KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    Ed25519Signer signer = new Ed25519Signer("test", "test-key", keyPair.getPrivate());
+    Ed25519Verifier verifier = new Ed25519Verifier(keyPair.getPublic());
+
+    byte[] signature = signer.sign(SOURCE);
+    assertEquals(64, signature.length);
+    assertTrue(verifier.verify(SOURCE, signature));
+    verifier.verifySignature(SOURCE, signature);
+    signature[0] ^= 1;
+    assertFalse(verifier.verify(SOURCE, signature));
+    assertFalse(verifier.verify(SOURCE, new byte[10]));
+  }
+
+  public void testTokensVerifyThroughParser() throws Exception {
+    FakeClock clock = new FakeClock(1);
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+    KeyPair ec = ecKeyPair("secp256r1");
+    KeyPair ed = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    final List<Verifier> ecVerifiers =
+        Collections.<Verifier>singletonList(new EcdsaSHA256Verifier(ec.getPublic()));
+    final List<Verifier> edVerifiers =
+        Collections.<Verifier>singletonList(new Ed25519Verifier(ed.getPublic()));
+    VerifierProviders providers = new VerifierProviders();
+    providers.setVerifierProvider(SignatureAlgorithm.ES256, (issuer, keyId) -> ecVerifiers);
+    providers.setVerifierProvider(SignatureAlgorithm.EdDSA, (issuer, keyId) -> edVerifiers);
+    JsonTokenParser parser = new JsonTokenParser(clock, providers);
+
+    Signer[] signers = {
+        new EcdsaSHA256Signer("google.com", "ec", (ECPrivateKey) ec.getPrivate()),
+        new Ed25519Signer("google.com", "ed", ed.getPrivate())};
+    for (Signer signer : signers) {
+      JsonToken token = new JsonToken(signer, clock);
+      token.setExpiration(clock.now().plusSeconds(600));
+      String tokenString = token.serializeAndSign();
+      JsonToken verified = parser.verifyAndDeserialize(tokenString);
+      assertEquals(signer.getSignatureAlgorithm(), verified.getSignatureAlgorithm());
+      // 64 signature bytes are 86 base64url characters
+      assertEquals(86, tokenString.length() - tokenString.lastIndexOf('.') - 1);
+    }
+  }
+}
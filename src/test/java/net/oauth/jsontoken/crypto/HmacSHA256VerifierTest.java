@@ -19,6 +19,12 @@ package net.oauth.jsontoken.crypto;
 import junit.framework.TestCase;
 
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Basic unit tests for the {@link HmacSHA256Verifier} class.
@@ -47,5 +53,35 @@ public class HmacSHA256VerifierTest extends TestCase {
       verifier.verifySignature(SOURCE, signature);
       fail("Expected bad signature");
     } catch (SignatureException expected) { }
+    assertFalse(verifier.verify(SOURCE, signature));
+    assertTrue(verifier.verify(SOURCE, signer.sign(SOURCE)));
+  }
+
+  public void testConcurrentSignAndVerify() throws Exception {
+    final HmacSHA256Signer signer = new HmacSHA256Signer("test", "test-key", SYMMETRIC_KEY);
+    final HmacSHA256Verifier verifier = new HmacSHA256Verifier(SYMMETRIC_KEY);
+    final byte[] expectedSignature = signer.sign(SOURCE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int j = 0; j < 2000; j++) {
+              verifier.verifySignature(SOURCE, signer.sign(SOURCE));
+              verifier.verifySignature(SOURCE, expectedSignature);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
   }
 }
@@ -0,0 +1,92 @@
+package net.oauth.jsontoken.crypto;
+
+import junit.framework.TestCase;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SignatureException;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that {@link RsaSHA256Signer} and {@link RsaSHA256Verifier} instances can
+ * be shared between threads.
+ */
+public class RsaSHA256VerifierTest extends TestCase {
+  private static final byte[] SOURCE = "randomdatatobesignedfortest".getBytes();
+
+  private KeyPair keyPair;
+
+  @Override
+  protected void setUp() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    keyPair = generator.generateKeyPair();
+  }
+
+  public void testBadSignature() throws Exception {
+    RsaSHA256Signer signer = new RsaSHA256Signer("test", "test-key", (RSAPrivateKey) keyPair.getPrivate());
+    RsaSHA256Verifier verifier = new RsaSHA256Verifier(keyPair.getPublic());
+
+    byte[] signature = signer.sign(SOURCE);
+    signature[0] ^= 1;
+    try {
+      verifier.verifySignature(SOURCE, signature);
+      fail("Expected bad signature");
+    } catch (SignatureException expected) { }
+
+    // the verifier must still accept good signatures afterwards
+    verifier.verifySignature(SOURCE, signer.sign(SOURCE));
+  }
+
+  public void testVerifyReturnsFalseForBadSignatures() throws Exception {
+    RsaSHA256Signer signer = new RsaSHA256Signer("test", "test-key", (RSAPrivateKey) keyPair.getPrivate());
+    RsaSHA256Verifier verifier = new RsaSHA256Verifier(keyPair.getPublic());
+
+    byte[] signature = signer.sign(SOURCE);
+    assertTrue(verifier.verify(SOURCE, signature));
+    assertFalse(verifier.verify(SOURCE, new byte[10]));
+    assertFalse(verifier.verify(SOURCE, null));
+    signature[0] ^= 1;
+    assertFalse(verifier.verify(SOURCE, signature));
+    signature[0] ^= 1;
+    assertTrue(verifier.verify(SOURCE, signature));
+  }
+
+  public void testConcurrentSignAndVerify() throws Exception {
+    final RsaSHA256Signer signer =
+        new RsaSHA256Signer("test", "test-key", (RSAPrivateKey) keyPair.getPrivate());
+    final RsaSHA256Verifier verifier = new RsaSHA256Verifier(keyPair.getPublic());
+    final byte[] truncated = new byte[10];
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int j = 0; j < 50; j++) {
+              verifier.verifySignature(SOURCE, signer.sign(SOURCE));
+              try {
+                verifier.verifySignature(SOURCE, truncated);
+                fail("Expected bad signature");
+              } catch (SignatureException expected) { }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.jsontoken.IgnoreAudience;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.JsonTokenTestBase;
+import net.oauth.jsontoken.crypto.RsaSHA256Signer;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link CachingServerInfoResolver} and the memoized keys of {@link JsonServerInfo}.
+ */
+public class CachingServerInfoResolverTest extends JsonTokenTestBase {
+
+  private final FakeClock clock = new FakeClock();
+  private final AtomicInteger resolutions = new AtomicInteger();
+  private volatile RuntimeException failure;
+  private volatile boolean missing;
+
+  private final ServerInfoResolver counting = new ServerInfoResolver() {
+    @Override
+    public ServerInfo resolve(URI serverDescriptor) {
+      resolutions.incrementAndGet();
+      if (failure != null) {
+        throw failure;
+      }
+      return missing ? null : JsonServerInfo.getDocument(SERVER_INFO_DOCUMENT);
+    }
+  };
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+  }
+
+  public void testCachesUntilTtl() throws Exception {
+    CachingServerInfoResolver resolver = new CachingServerInfoResolver(counting, clock, 60);
+    URI a = URI.create("https://a.example.com");
+    URI b = URI.create("https://b.example.com");
+    ServerInfo info = resolver.resolve(a);
+    assertSame(info, resolver.resolve(a));
+    assertEquals(1, resolutions.get());
+    assertNotSame(info, resolver.resolve(b));
+    assertEquals(2, resolutions.get());
+
+    clock.setNow(clock.now().plusSeconds(59));
+    assertSame(info, resolver.resolve(a));
+    clock.setNow(clock.now().plusSeconds(1));
+    assertNotSame(info, resolver.resolve(a));
+    assertEquals(3, resolutions.get());
+
+    resolver.invalidate(a);
+    resolver.resolve(a);
+    assertEquals(4, resolutions.get());
+  }
+
+  public void testServesExpiredDocumentWhenResolvingFails() throws Exception {
+    CachingServerInfoResolver resolver = new CachingServerInfoResolver(counting, clock, 60);
+    URI a = URI.create("https://a.example.com");
+    failure = new IllegalStateException("down");
+    try {
+      resolver.resolve(a);
+      fail("expected the failure to propagate");
+    } catch (IllegalStateException expected) { }
+
+    failure = null;
+    missing = true;
+    assertNull(resolver.resolve(a));
+    missing = false;
+    ServerInfo info = resolver.resolve(a);
+    assertNotNull(info);
+
+    clock.setNow(clock.now().plusSeconds(120));
+    failure = new IllegalStateException("down");
+    assertSame(info, resolver.resolve(a));
+    assertEquals(4, resolutions.get());
+    // no new attempt within the retry interval
+    clock.setNow(clock.now().plusSeconds(29));
+    assertSame(info, resolver.resolve(a));
+    assertEquals(4, resolutions.get());
+
+    clock.setNow(clock.now().plusSeconds(1));
+    failure = null;
+    missing = true;
+    assertSame(info, resolver.resolve(a));
+    assertEquals(5, resolutions.get());
+    clock.setNow(clock.now().plusSeconds(29));
+    assertSame(info, resolver.resolve(a));
+    assertEquals(5, resolutions.get());
+
+    clock.setNow(clock.now().plusSeconds(1));
+    missing = false;
+    assertNotSame(info, resolver.resolve(a));
+    assertEquals(6, resolutions.get());
+  }
+
+  public void testServerInfoParsesEachKeyOnce() throws Exception {
+    JsonServerInfo info = JsonServerInfo.getDocument(SERVER_INFO_DOCUMENT);
+    assertSame(info.getVerificationKey("key1"), info.getVerificationKey("key1"));
+    assertSame(info.getVerifier("key1"), info.getVerifier("key1"));
+    assertNull(info.getVerificationKey("key2"));
+    assertNull(info.getVerifier("key2"));
+    assertNull(info.getVerifier(null));
+  }
+
+  public void testLocatorResolvesOnce() throws Exception {
+    VerifierProviders providers = new VerifierProviders();
+    DefaultPublicKeyLocator locator = new DefaultPublicKeyLocator(
+        new IdentityServerDescriptorProvider(), new CachingServerInfoResolver(counting, clock, 60));
+    providers.setVerifierProvider(SignatureAlgorithm.RS256, locator);
+    JsonTokenParser parser = new JsonTokenParser(clock, providers, new IgnoreAudience());
+    RsaSHA256Signer signer = new RsaSHA256Signer("http://example.com", "key1", privateKey);
+    for (int i = 0; i < 10; i++) {
+      JsonToken token = new JsonToken(signer, clock);
+      token.setParam("n", i);
+      token.setExpiration(clock.now().plusSeconds(60));
+      parser.verifyAndDeserialize(token.serializeAndSign());
+    }
+    assertEquals(1, resolutions.get());
+    assertNull(locator.findVerifier("http://example.com", "key2"));
+  }
+}
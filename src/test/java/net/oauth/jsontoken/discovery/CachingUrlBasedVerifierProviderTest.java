@@ -0,0 +1,394 @@
+package net.oauth.jsontoken.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.jsontoken.IgnoreAudience;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.JsonTokenTestBase;
+import net.oauth.jsontoken.crypto.EcdsaSHA256Verifier;
+import net.oauth.jsontoken.crypto.RsaSHA256Signer;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.metrics.RecorderTokenMetrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link CachingUrlBasedVerifierProvider} against a local certificate server.
+ */
+public class CachingUrlBasedVerifierProviderTest extends JsonTokenTestBase {
+
+  // self-signed certificate for JsonTokenTestBase.PRIVATE_KEY
+  static final String CERTIFICATE =
+      "-----BEGIN CERTIFICATE-----\n"
+      + "MIIDDTCCAfWgAwIBAgIUM68dmOwV2LbsTxqCeuUMiSbSaKEwDQYJKoZIhvcNAQEL\n"
+      + "BQAwFTETMBEGA1UEAwwKZ29vZ2xlLmNvbTAgFw0yNjEwMTgxNjUxNTFaGA8yMTI2\n"
+      + "MDkyNDE2NTE1MVowFTETMBEGA1UEAwwKZ29vZ2xlLmNvbTCCASIwDQYJKoZIhvcN\n"
+      + "AQEBBQADggEPADCCAQoCggEBALqcwRcW7FOczn7IzgB+eDJt/lnz0nGVyEEDc2L/\n"
+      + "8abX/bkx63N8h3YmDw2S2GZEPMfqwVqg1LufpnonI0kWzNvY9coGRl16bbX0XmSN\n"
+      + "rCget8DUu7x8GYZBgb9obvRo9+3Z4Rltj5epblZSUyTu8VbsEOKTAFfK//musVqw\n"
+      + "F89Z3XfGjND3rXYgStYaUYyDGYHriNxNsZYzMODMT+xxKbJ5DS9BAxbwn42dv/IO\n"
+      + "ljuWhetWsCBnHwgG/V/0W/enu2KtMP+8WDPETasgBq4z9pTzMEcTJcvU1I2rQjrY\n"
+      + "4AXgMuIOVwQU69iOqiII9AiHQ1edDLwNyznEcKPR7Vvdf8sCAwEAAaNTMFEwHQYD\n"
+      + "VR0OBBYEFMWGVVN6B3Klm9gOYMb2q5a2eFdxMB8GA1UdIwQYMBaAFMWGVVN6B3Kl\n"
+      + "m9gOYMb2q5a2eFdxMA8GA1UdEwEB/wQFMAMBAf8wDQYJKoZIhvcNAQELBQADggEB\n"
+      + "AJeWoBkYPS7c81j2Q0IYtKjani5r3BkiSmYUyRn8yQ28/zb+a428OU8dpN7aphu9\n"
+      + "hmpzQ7tGB3otco2PiEWoNWyB80mNh4AObB6X7GJ/yr7qd5z/GrNyosUoDKhXm759\n"
+      + "HyCj6VEW14N8s5A+vmAKN7+E7l7e/h8CLcngfRJ6m3C05rZrzgvLOzugvs7ueCrY\n"
+      + "w/hN/5tey2HUj8bQDuHGXaWJU4rWe2NeaGZzeWFMWqH1uDG+tPulRLCsZXmCntm2\n"
+      + "2Vo29zGoQ4PrO4o9rVC4FXWArBhULCkWe/cGC3/9kvadJPrC7tn8fhi2cnt04zS5\n"
+      + "XykCL0JQCKA1Wv2NP6iamOU=\n"
+      + "-----END CERTIFICATE-----\n";
+
+  // self-signed certificate for a P-256 key
+  private static final String EC_CERTIFICATE =
+      "-----BEGIN CERTIFICATE-----\n"
+      + "MIIBRDCB7KADAgECAgkAzXVkkRvb8t0wCgYIKoZIzj0EAwIwFjEUMBIGA1UEAxML\n"
+      + "ZXhhbXBsZS5jb20wIBcNMjYxMDE4MTc0NDEzWhgPMjEyNjA5MjQxNzQ0MTNaMBYx\n"
+      + "FDASBgNVBAMTC2V4YW1wbGUuY29tMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE\n"
+      + "jz7ubFLhlMm4iRNrfQZwdpwkYsWNSm/zPpWLl2MOlIsyqVq0b5PH/VIgtMUvoXKz\n"
+      + "1JLTEw5Mu6H2qUhZXUCGeaMhMB8wHQYDVR0OBBYEFL832t4OY0LShEvcl3jwESr3\n"
+      + "TldzMAoGCCqGSM49BAMCA0cAMEQCIEsV4uJRAR7NvJGr+NRFpzHMMd+Hck0BHuh0\n"
+      + "FYz1+PH5AiB+ZoqM+A83TyPmaYkhfAUEzsXldvYBtgkD46jUe5//gw==\n"
+      + "-----END CERTIFICATE-----\n";
+
+  private final FakeClock clock = new FakeClock();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final List<Runnable> pending = Collections.synchronizedList(new ArrayList<Runnable>());
+  private final Executor queue = runnable -> pending.add(runnable);
+  private final Executor direct = runnable -> runnable.run();
+
+  private volatile int status = 200;
+  private volatile Map<String, String> headers = new LinkedHashMap<String, String>();
+  private volatile CountDownLatch gate;
+  private volatile byte[] document;
+  private HttpServer server;
+  private String url;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+    serve("key1");
+
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/certs", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+          CountDownLatch latch = gate;
+          if (latch != null) {
+            latch.await(10, TimeUnit.SECONDS);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+          exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        byte[] body = status == 200 ? document : "unavailable".getBytes(StandardCharsets.US_ASCII);
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/certs";
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  private void serve(String... keyIds) throws Exception {
+    Map<String, String> certs = new LinkedHashMap<String, String>();
+    for (String keyId : keyIds) {
+      certs.put(keyId, CERTIFICATE);
+    }
+    document = new ObjectMapper().writeValueAsBytes(certs);
+  }
+
+  private void advance(long seconds) {
+    clock.setNow(clock.now().plusSeconds(seconds));
+  }
+
+  private void runPending() {
+    List<Runnable> tasks;
+    synchronized (pending) {
+      tasks = new ArrayList<Runnable>(pending);
+      pending.clear();
+    }
+    for (Runnable task : tasks) {
+      task.run();
+    }
+  }
+
+  private void assertVerifiesTokenKey(List<Verifier> verifiers) throws Exception {
+    assertEquals(1, verifiers.size());
+    byte[] source = "signed by the test key".getBytes(StandardCharsets.US_ASCII);
+    verifiers.get(0).verifySignature(source,
+        new RsaSHA256Signer("google.com", "key1", privateKey).sign(source));
+  }
+
+  public void testUncachedProviderFetchesEveryTime() throws Exception {
+    UrlBasedVerifierProvider provider = new UrlBasedVerifierProvider(url);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(2, requests.get());
+
+    status = 500;
+    assertNull(provider.findVerifier("google.com", "key1"));
+  }
+
+  public void testFiltersKeysByAlgorithm() throws Exception {
+    Map<String, String> certs = new LinkedHashMap<String, String>();
+    certs.put("key1", CERTIFICATE);
+    certs.put("ec1", EC_CERTIFICATE);
+    document = new ObjectMapper().writeValueAsBytes(certs);
+
+    UrlBasedVerifierProvider uncached = new UrlBasedVerifierProvider(url);
+    CachingUrlBasedVerifierProvider cached = new CachingUrlBasedVerifierProvider(url, clock, direct);
+    for (VerifierProvider provider : new VerifierProvider[] {uncached, cached}) {
+      // an RS256 lookup never hands out the EC key, even when falling back to all keys
+      assertVerifiesTokenKey(provider.findVerifier("google.com", "ec1"));
+      assertVerifiesTokenKey(provider.findVerifier("google.com", null));
+    }
+    for (VerifierProvider provider
+        : new VerifierProvider[] {uncached.forAlgorithm(SignatureAlgorithm.ES256),
+            cached.forAlgorithm(SignatureAlgorithm.ES256)}) {
+      List<Verifier> verifiers = provider.findVerifier("google.com", "ec1");
+      assertEquals(1, verifiers.size());
+      assertTrue(verifiers.get(0) instanceof EcdsaSHA256Verifier);
+      assertEquals(verifiers.size(), provider.findVerifier("google.com", "key1").size());
+      assertTrue(provider.findVerifier("google.com", "key1").get(0) instanceof EcdsaSHA256Verifier);
+    }
+    assertTrue(cached.forAlgorithm(SignatureAlgorithm.EdDSA).findVerifier("google.com", null).isEmpty());
+    // five uncached lookups, while the cached provider and its views share one download
+    assertEquals(6, requests.get());
+  }
+
+  public void testCachesDocument() throws Exception {
+    CachingUrlBasedVerifierProvider provider = new CachingUrlBasedVerifierProvider(url, clock, direct);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    advance(60);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(1, requests.get());
+
+    provider.invalidate();
+    provider.findVerifier("google.com", "key1");
+    assertEquals(2, requests.get());
+  }
+
+  public void testRefreshesInBackgroundBeforeMaxAge() throws Exception {
+    headers.put("Cache-Control", "public, max-age=100");
+    final CachingUrlBasedVerifierProvider provider =
+        new CachingUrlBasedVerifierProvider(url, clock, queue);
+    provider.setTtlBoundsInSeconds(0, 1000);
+    ExecutorService caller = Executors.newSingleThreadExecutor();
+    Future<List<Verifier>> first = caller.submit(
+        new Callable<List<Verifier>>() {
+          @Override
+          public List<Verifier> call() {
+            return provider.findVerifier("google.com", "key1");
+          }
+        });
+    while (pending.isEmpty()) {
+      Thread.sleep(1);
+    }
+    runPending();
+    assertVerifiesTokenKey(first.get(10, TimeUnit.SECONDS));
+    caller.shutdown();
+
+    advance(79);
+    assertNotNull(provider.findVerifier("google.com", "key1"));
+    assertTrue(pending.isEmpty());
+
+    // due for refresh: cached keys are returned at once, and both callers share one download
+    advance(2);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(1, pending.size());
+    assertEquals(1, requests.get());
+    runPending();
+    assertEquals(2, requests.get());
+
+    advance(79);
+    assertNotNull(provider.findVerifier("google.com", "key1"));
+    assertTrue(pending.isEmpty());
+  }
+
+  public void testHonoursExpires() throws Exception {
+    DateTimeFormatter format = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    Instant date = Instant.now();
+    headers.put("Date", format.format(date));
+    headers.put("Expires", format.format(date.plusSeconds(200)));
+    CachingUrlBasedVerifierProvider provider = new CachingUrlBasedVerifierProvider(url, clock, direct);
+    provider.findVerifier("google.com", "key1");
+
+    advance(159);
+    provider.findVerifier("google.com", "key1");
+    assertEquals(1, requests.get());
+    advance(2);
+    provider.findVerifier("google.com", "key1");
+    assertEquals(2, requests.get());
+  }
+
+  public void testServesStaleKeysWhenRefreshFails() throws Exception {
+    headers.put("Cache-Control", "max-age=100");
+    CachingUrlBasedVerifierProvider provider = new CachingUrlBasedVerifierProvider(url, clock, direct);
+    provider.setTtlBoundsInSeconds(0, 1000);
+    provider.setRetryIntervalInSeconds(30);
+    provider.findVerifier("google.com", "key1");
+
+    status = 500;
+    advance(101);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(2, requests.get());
+
+    // no new attempt within the retry interval
+    advance(29);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(2, requests.get());
+
+    status = 200;
+    advance(2);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(3, requests.get());
+  }
+
+  public void testFirstFetchFailureReturnsNull() throws Exception {
+    status = 404;
+    CachingUrlBasedVerifierProvider provider = new CachingUrlBasedVerifierProvider(url, clock, direct);
+    RecorderTokenMetrics metrics = new RecorderTokenMetrics(name -> null);
+    provider.setMetrics(metrics);
+    provider.setRetryIntervalInSeconds(30);
+    assertNull(provider.findVerifier("google.com", "key1"));
+    assertEquals(1, metrics.getKeyFetchFailureCount());
+
+    // lookups fail fast until the retry interval has passed
+    status = 200;
+    advance(29);
+    assertNull(provider.findVerifier("google.com", "key1"));
+    assertEquals(1, requests.get());
+
+    advance(1);
+    assertVerifiesTokenKey(provider.findVerifier("google.com", "key1"));
+    assertEquals(1, metrics.getKeyFetchSuccessCount());
+    assertEquals(2, requests.get());
+  }
+
+  public void testConcurrentLookupsShareOneDownload() throws Exception {
+    gate = new CountDownLatch(1);
+    final CachingUrlBasedVerifierProvider provider = new CachingUrlBasedVerifierProvider(url);
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<Verifier>>> results = new ArrayList<Future<List<Verifier>>>();
+      for (int i = 0; i < 8; i++) {
+        results.add(callers.submit(new Callable<List<Verifier>>() {
+          @Override
+          public List<Verifier> call() {
+            return provider.findVerifier("google.com", "key1");
+          }
+        }));
+      }
+      while (requests.get() == 0) {
+        Thread.sleep(1);
+      }
+      Thread.sleep(50);
+      gate.countDown();
+      for (Future<List<Verifier>> result : results) {
+        assertVerifiesTokenKey(result.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(1, requests.get());
+    } finally {
+      callers.shutdown();
+    }
+  }
+
+  public void testIndexesByKeyIdAndThumbprint() throws Exception {
+    X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X509")
+        .generateCertificate(new ByteArrayInputStream(CERTIFICATE.getBytes(StandardCharsets.US_ASCII)));
+    Verifier first = (source, signature) -> { };
+    Verifier second = (source, signature) -> { };
+    VerifierIndex index = new VerifierIndex.Builder()
+        .add(first, "key1", certificate)
+        .add(second, "key2")
+        .build();
+    String[] thumbprints = VerifierIndex.thumbprints(certificate);
+
+    assertEquals(Collections.singletonList(first), index.find("key1"));
+    assertEquals(Collections.singletonList(first), index.find(thumbprints[0]));
+    assertEquals(Collections.singletonList(first), index.find(thumbprints[1]));
+    assertEquals(Collections.singletonList(second), index.find("key2"));
+    assertEquals(Arrays.asList(first, second), index.find("key3"));
+    assertEquals(Arrays.asList(first, second), index.find(null));
+  }
+
+  public void testParserScansAllKeysOnlyWithoutKeyId() throws Exception {
+    serve("key1", "key2", "key3");
+    VerifierProviders providers = new VerifierProviders();
+    providers.setVerifierProvider(SignatureAlgorithm.RS256,
+        new CachingUrlBasedVerifierProvider(url, clock, direct));
+    JsonTokenParser parser = new JsonTokenParser(clock, providers, new IgnoreAudience());
+
+    assertEquals("google.com", parser.verifyAndDeserialize(createToken("key2")).getIssuer());
+    assertEquals(0, parser.getFullScanCount());
+    parser.verifyAndDeserialize(createToken(null));
+    assertEquals(1, parser.getFullScanCount());
+  }
+
+  private String createToken(String keyId) throws Exception {
+    JsonToken token = new JsonToken(new RsaSHA256Signer("google.com", keyId, privateKey), clock);
+    token.setIssuedAt(clock.now().minusSeconds(60));
+    token.setExpiration(clock.now().plusSeconds(600));
+    return token.serializeAndSign();
+  }
+
+  public void testMaxAgeFromHeaders() throws Exception {
+    headers.put("Cache-Control", "max-age=\"300\", must-revalidate");
+    headers.put("Age", "100");
+    assertEquals(200000, fetch().getMaxAgeMillis());
+
+    headers.clear();
+    headers.put("Cache-Control", "no-cache");
+    assertEquals(0, fetch().getMaxAgeMillis());
+
+    headers.clear();
+    assertEquals(CertificateDocument.UNKNOWN_MAX_AGE, fetch().getMaxAgeMillis());
+  }
+
+  private CertificateDocument fetch() throws Exception {
+    return CertificateDocument.fetch(url, 1000, System.currentTimeMillis());
+  }
+}
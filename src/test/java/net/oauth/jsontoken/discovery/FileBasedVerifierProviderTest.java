@@ -0,0 +1,237 @@
+package net.oauth.jsontoken.discovery;
+
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.jsontoken.IgnoreAudience;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.JsonTokenTestBase;
+import net.oauth.jsontoken.crypto.EcdsaSHA256Signer;
+import net.oauth.jsontoken.crypto.Ed25519Signer;
+import net.oauth.jsontoken.crypto.RsaSHA256Signer;
+import net.oauth.jsontoken.crypto.SignatureAlgorithm;
+import net.oauth.jsontoken.crypto.Signer;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SignatureException;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * Tests for {@link FileBasedVerifierProvider}.
+ */
+public class FileBasedVerifierProviderTest extends JsonTokenTestBase {
+
+  private static final String ISSUER = "https://a.example.com";
+
+  private final FakeClock clock = new FakeClock();
+  private final Executor direct = runnable -> runnable.run();
+  private Path directory;
+  private KeyPair rsa;
+  private KeyPair ec;
+  private KeyPair ed25519;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+    directory = Files.createTempDirectory("jsontoken-keys");
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    rsa = generator.generateKeyPair();
+    generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    ec = generator.generateKeyPair();
+    ed25519 = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    // deepest entries first, so directories are empty when they are deleted
+    try (Stream<Path> files = Files.walk(directory).sorted(Comparator.reverseOrder())) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static String b64(BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    if (bytes[0] == 0 && bytes.length > 1) {
+      bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+    }
+    return Base64.encodeBase64URLSafeString(bytes);
+  }
+
+  private static String rsaJwk(String kid, KeyPair keyPair) {
+    RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+    return "{\"kty\":\"RSA\",\"kid\":\"" + kid + "\",\"n\":\"" + b64(key.getModulus())
+        + "\",\"e\":\"" + b64(key.getPublicExponent()) + "\"}";
+  }
+
+  private String jwks() {
+    ECPublicKey ecKey = (ECPublicKey) ec.getPublic();
+    byte[] encoded = ed25519.getPublic().getEncoded();
+    byte[] x = Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length);
+    return "{\"issuer\":\"" + ISSUER + "\",\"keys\":["
+        + rsaJwk("rsa1", rsa) + ","
+        + "{\"kty\":\"EC\",\"crv\":\"P-256\",\"kid\":\"ec1\",\"x\":\"" + b64(ecKey.getW().getAffineX())
+        + "\",\"y\":\"" + b64(ecKey.getW().getAffineY()) + "\"},"
+        + "{\"kty\":\"OKP\",\"crv\":\"Ed25519\",\"kid\":\"ed1\",\"x\":\""
+        + Base64.encodeBase64URLSafeString(x) + "\"},"
+        + "{\"kty\":\"EC\",\"crv\":\"P-521\",\"kid\":\"unsupported\",\"x\":\"AA\",\"y\":\"AA\"},"
+        + "{\"kty\":\"RSA\",\"use\":\"enc\",\"kid\":\"encryption\",\"n\":\"AA\",\"e\":\"AQAB\"}]}";
+  }
+
+  private void write(String name, String content) throws IOException {
+    // write next to the target and move it in place, as a deployment would
+    Path temp = directory.resolve("." + name + ".tmp");
+    Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private JsonTokenParser parser(FileBasedVerifierProvider provider) {
+    VerifierProviders providers = new VerifierProviders();
+    for (SignatureAlgorithm sigAlg : Arrays.asList(
+        SignatureAlgorithm.RS256, SignatureAlgorithm.ES256, SignatureAlgorithm.EdDSA)) {
+      providers.setVerifierProvider(sigAlg, provider.forAlgorithm(sigAlg));
+    }
+    return new JsonTokenParser(clock, providers, new IgnoreAudience());
+  }
+
+  private String token(Signer signer) throws Exception {
+    JsonToken token = new JsonToken(signer, clock);
+    token.setExpiration(clock.now().plusSeconds(60));
+    return token.serializeAndSign();
+  }
+
+  private static void waitFor(Callable<Boolean> condition) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.call()) {
+      assertTrue("timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+
+  public void testLoadsAllFormats() throws Exception {
+    write("jwks.json", jwks());
+    write("magic.json", SERVER_INFO_DOCUMENT);
+    FileBasedVerifierProvider provider = new FileBasedVerifierProvider(directory, direct, false);
+    JsonTokenParser parser = parser(provider);
+
+    parser.verifyAndDeserialize(
+        token(new RsaSHA256Signer(ISSUER, "rsa1", (RSAPrivateKey) rsa.getPrivate())));
+    parser.verifyAndDeserialize(
+        token(new EcdsaSHA256Signer(ISSUER, "ec1", (ECPrivateKey) ec.getPrivate())));
+    parser.verifyAndDeserialize(token(new Ed25519Signer(ISSUER, "ed1", ed25519.getPrivate())));
+    // magic keys have no issuer, so they serve every other issuer
+    parser.verifyAndDeserialize(token(new RsaSHA256Signer("other.com", "key1", privateKey)));
+
+    assertEquals(1, provider.findVerifier(ISSUER, "rsa1").size());
+    assertEquals(3, provider.findVerifier(ISSUER, "unknown").size());
+    assertEquals(1, provider.forAlgorithm(SignatureAlgorithm.ES256).findVerifier(ISSUER, null).size());
+    assertNull(provider.forAlgorithm(SignatureAlgorithm.ES256).findVerifier("other.com", null));
+    try {
+      // the issuer's own keys don't include the magic key
+      parser.verifyAndDeserialize(token(new RsaSHA256Signer(ISSUER, "key1", privateKey)));
+      fail("expected signature failure");
+    } catch (SignatureException expected) { }
+  }
+
+  public void testLoadsPemCertificatesAndRejectsBadFiles() throws Exception {
+    Path file = directory.resolve("keys.json");
+    Files.write(file, "{\"keys\": [".getBytes(StandardCharsets.UTF_8));
+    try {
+      new FileBasedVerifierProvider(file, direct, false);
+      fail("expected malformed file to be rejected");
+    } catch (IOException expected) { }
+
+    Files.write(directory.resolve("keys.json"), SERVER_INFO_DOCUMENT.getBytes(StandardCharsets.UTF_8));
+    FileBasedVerifierProvider provider = new FileBasedVerifierProvider(file, direct, false);
+    assertEquals(1, provider.findVerifier(null, "key1").size());
+
+    Files.write(directory.resolve("google.pem"),
+        CachingUrlBasedVerifierProviderTest.CERTIFICATE.getBytes(StandardCharsets.US_ASCII));
+    provider = new FileBasedVerifierProvider(directory, direct, false);
+    assertEquals(2, provider.findVerifier("google.com", null).size());
+    assertEquals(1, provider.findVerifier("google.com", "google").size());
+  }
+
+  public void testReloadsOnChange() throws Exception {
+    write("jwks.json", jwks());
+    final FileBasedVerifierProvider provider = new FileBasedVerifierProvider(directory);
+    try {
+      JsonTokenParser parser = parser(provider);
+      KeyPair rotated = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+      String token = token(new RsaSHA256Signer(ISSUER, "rsa2", (RSAPrivateKey) rotated.getPrivate()));
+      try {
+        parser.verifyAndDeserialize(token);
+        fail("expected unknown key");
+      } catch (SignatureException expected) { }
+
+      write("rotated.json", "{\"issuer\":\"" + ISSUER + "\",\"keys\":[" + rsaJwk("rsa2", rotated) + "]}");
+      waitFor(() -> provider.findVerifier(ISSUER, null).size() == 4);
+      parser.verifyAndDeserialize(token);
+      final long reloads = provider.getReloadCount();
+
+      // a broken file keeps the previous keys in place
+      write("rotated.json", "{\"keys\": [");
+      waitFor(() -> provider.getReloadFailureCount() > 0);
+      parser.verifyAndDeserialize(token);
+      assertEquals(reloads, provider.getReloadCount());
+
+      Files.delete(directory.resolve("rotated.json"));
+      waitFor(() -> provider.getReloadCount() > reloads);
+      assertEquals(3, provider.findVerifier(ISSUER, null).size());
+    } finally {
+      provider.close();
+    }
+  }
+
+  public void testReloadsWhenMountedVolumeSwapsDataLink() throws Exception {
+    // the layout of a mounted Kubernetes secret: key.json -> ..data/key.json -> ..v1/key.json
+    Path v1 = Files.createDirectory(directory.resolve("..v1"));
+    Files.write(v1.resolve("key.json"), jwks().getBytes(StandardCharsets.UTF_8));
+    Files.createSymbolicLink(directory.resolve("..data"), v1.getFileName());
+    Files.createSymbolicLink(directory.resolve("key.json"), directory.getFileSystem()
+        .getPath("..data", "key.json"));
+    final FileBasedVerifierProvider provider = new FileBasedVerifierProvider(directory);
+    try {
+      assertEquals(3, provider.findVerifier(ISSUER, null).size());
+      final long reloads = provider.getReloadCount();
+
+      // an update only touches dot-prefixed entries: a new version and the ..data link
+      KeyPair rotated = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+      Path v2 = Files.createDirectory(directory.resolve("..v2"));
+      Files.write(v2.resolve("key.json"), ("{\"issuer\":\"" + ISSUER + "\",\"keys\":["
+          + rsaJwk("rsa2", rotated) + "]}").getBytes(StandardCharsets.UTF_8));
+      Path link = Files.createSymbolicLink(directory.resolve("..data_tmp"), v2.getFileName());
+      Files.move(link, directory.resolve("..data"), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+
+      waitFor(() -> provider.getReloadCount() > reloads);
+      assertEquals(1, provider.findVerifier(ISSUER, "rsa2").size());
+      assertEquals(1, provider.findVerifier(ISSUER, null).size());
+    } finally {
+      provider.close();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package net.oauth.jsontoken.metrics;
+
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.jsontoken.JsonToken;
+import net.oauth.jsontoken.JsonTokenClaims;
+import net.oauth.jsontoken.JsonTokenParser;
+import net.oauth.jsontoken.JsonTokenTestBase;
+import net.oauth.jsontoken.VerificationResult.Reason;
+import net.oauth.jsontoken.crypto.HmacSHA256Signer;
+import net.oauth.jsontoken.crypto.HmacSHA256Verifier;
+import net.oauth.jsontoken.crypto.Verifier;
+import net.oauth.jsontoken.metrics.TokenMetrics.Stage;
+import net.oauth.signatures.SignedTokenAudienceChecker;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RecorderTokenMetricsTest extends JsonTokenTestBase {
+
+  private final FakeClock clock = new FakeClock(1);
+  private final Map<String, AtomicLong> counts = new ConcurrentHashMap<String, AtomicLong>();
+  private final RecorderTokenMetrics metrics = new RecorderTokenMetrics(name -> {
+    AtomicLong count = counts.computeIfAbsent(name, n -> new AtomicLong());
+    return nanos -> count.incrementAndGet();
+  });
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+  }
+
+  private long count(String name) {
+    AtomicLong count = counts.get(name);
+    return count == null ? 0 : count.get();
+  }
+
+  private String createToken(String audience) throws Exception {
+    HmacSHA256Signer signer = new HmacSHA256Signer("google.com", "key2", SYMMETRIC_KEY);
+    JsonToken token = new JsonToken(new TimedSigner(signer, metrics), clock);
+    token.setAudience(audience);
+    token.setIssuedAt(clock.now().minusSeconds(60));
+    token.setExpiration(clock.now().plusSeconds(600));
+    return token.serializeAndSign();
+  }
+
+  public void testRecordsStagesAndRejections() throws Exception {
+    JsonTokenParser parser = new JsonTokenParser(clock, locators,
+        new SignedTokenAudienceChecker("http://www.google.com"));
+    parser.setMetrics(metrics);
+    String token = createToken("http://www.google.com");
+    assertEquals(1, count("sign"));
+
+    parser.verifyAndDeserialize(token);
+    assertEquals(2, count("decode"));
+    assertEquals(2, count("parse"));
+    assertEquals(1, count("key_lookup"));
+    assertEquals(1, count("signature"));
+    assertEquals(1, count("claims"));
+
+    assertEquals(Reason.BAD_FORMAT, parser.verifyToken("not a token").getReason());
+    String badSignature = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+    assertEquals(Reason.BAD_SIGNATURE, parser.verifyToken(badSignature).getReason());
+    assertEquals(Reason.WRONG_AUDIENCE,
+        parser.verifyToken(createToken("http://www.example.com")).getReason());
+    try {
+      parser.verifyAndDeserialize(badSignature);
+      fail("expected bad signature");
+    } catch (java.security.SignatureException expected) { }
+
+    clock.setNow(clock.now().plusSeconds(3600));
+    assertEquals(Reason.INVALID_TIME, parser.verifyToken(token).getReason());
+    try {
+      parser.verifyAndDeserialize(token, JsonTokenClaims.class);
+      fail("expected expired token");
+    } catch (IllegalStateException expected) { }
+
+    // rejected claims are timed too, but tokens rejected before the claims are not
+    assertEquals(4, count("claims"));
+
+    assertEquals(1, metrics.getRejectionCount(Reason.BAD_FORMAT));
+    assertEquals(2, metrics.getRejectionCount(Reason.BAD_SIGNATURE));
+    assertEquals(1, metrics.getRejectionCount(Reason.WRONG_AUDIENCE));
+    assertEquals(2, metrics.getRejectionCount(Reason.INVALID_TIME));
+    assertEquals(0, metrics.getRejectionCount(Reason.NO_VERIFIER));
+  }
+
+  public void testRecordsKeyScans() throws Exception {
+    JsonTokenParser parser = new JsonTokenParser(clock, locators);
+    parser.setMetrics(metrics);
+    String token = createToken("a");
+    Verifier verifier = new HmacSHA256Verifier(SYMMETRIC_KEY);
+
+    assertTrue(parser.signatureIsValid(token, Collections.singletonList(verifier)));
+    assertEquals(0, metrics.getKeyScanCount());
+    assertTrue(parser.signatureIsValid(token, Arrays.asList(verifier, verifier)));
+    assertEquals(1, metrics.getKeyScanCount());
+    assertEquals(parser.getFullScanCount(), metrics.getKeyScanCount());
+  }
+
+  public void testNoopByDefault() throws Exception {
+    JsonTokenParser parser = new JsonTokenParser(clock, locators);
+    assertSame(TokenMetrics.NOOP, parser.getMetrics());
+    parser.setMetrics(metrics);
+    assertSame(metrics, parser.getMetrics());
+    parser.setMetrics(TokenMetrics.NOOP);
+    parser.verifyAndDeserialize(createToken("a"));
+    assertEquals(0, count("decode"));
+    assertEquals(1, count(Stage.SIGN.name().toLowerCase()));
+  }
+}
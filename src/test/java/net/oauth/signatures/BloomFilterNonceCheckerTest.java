@@ -0,0 +1,64 @@
+package net.oauth.signatures;
+
+import junit.framework.TestCase;
+import net.oauth.jsontoken.FakeClock;
+
+import java.security.SignatureException;
+import java.time.Instant;
+
+public class BloomFilterNonceCheckerTest extends TestCase {
+
+  private FakeClock clock = new FakeClock();
+
+  @Override
+  protected void setUp() throws Exception {
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+  }
+
+  private static boolean accepts(NonceChecker checker, String nonce) {
+    try {
+      checker.checkNonce(nonce);
+      return true;
+    } catch (SignatureException e) {
+      return false;
+    }
+  }
+
+  public void testRejectsReplayUntilWindowPasses() throws Exception {
+    BloomFilterNonceChecker checker = new BloomFilterNonceChecker(clock, 60, 4, 1000, 1e-6);
+    assertTrue(accepts(checker, "a"));
+    assertFalse(accepts(checker, "a"));
+    assertFalse(accepts(checker, null));
+
+    clock.setNow(clock.now().plusSeconds(59));
+    assertFalse(accepts(checker, "a"));
+    assertTrue(accepts(checker, "b"));
+
+    // one slice (15s) past the window the nonce is forgotten
+    clock.setNow(clock.now().plusSeconds(16));
+    assertTrue(accepts(checker, "a"));
+    assertFalse(accepts(checker, "b"));
+    assertEquals(3, checker.getRejectCount());
+  }
+
+  public void testFixedSizeAndFalsePositiveRate() throws Exception {
+    BloomFilterNonceChecker checker = new BloomFilterNonceChecker(clock, 60, 4, 100000, 1e-3);
+    long size = checker.getSizeInBytes();
+    assertEquals(5 * checker.getBitsPerFilter() / 8, size);
+
+    int falsePositives = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (!accepts(checker, "nonce-" + i)) {
+        falsePositives++;
+      }
+      if (i % 25000 == 24999) {
+        clock.setNow(clock.now().plusSeconds(15));
+      }
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < 100);
+    for (int i = 75000; i < 100000; i++) {
+      assertFalse(accepts(checker, "nonce-" + i));
+    }
+    assertEquals(size, checker.getSizeInBytes());
+  }
+}
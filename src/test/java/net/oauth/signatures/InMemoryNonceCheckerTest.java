@@ -0,0 +1,112 @@
+package net.oauth.signatures;
+
+import junit.framework.TestCase;
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.signatures.InMemoryNonceChecker.OverflowPolicy;
+
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InMemoryNonceCheckerTest extends TestCase {
+
+  private FakeClock clock = new FakeClock();
+
+  @Override
+  protected void setUp() throws Exception {
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+  }
+
+  private static boolean accepts(NonceChecker checker, String nonce) {
+    try {
+      checker.checkNonce(nonce);
+      return true;
+    } catch (SignatureException e) {
+      return false;
+    }
+  }
+
+  public void testRejectsReplayUntilWindowPasses() throws Exception {
+    InMemoryNonceChecker checker =
+        new InMemoryNonceChecker(clock, 60, 4, 1000, OverflowPolicy.REJECT);
+    assertTrue(accepts(checker, "a"));
+    assertTrue(accepts(checker, "b"));
+    assertFalse(accepts(checker, "a"));
+    assertFalse(accepts(checker, null));
+    assertEquals(1, checker.getRejectCount());
+    assertEquals(2, checker.getSize());
+
+    clock.setNow(clock.now().plusSeconds(59));
+    assertFalse(accepts(checker, "a"));
+
+    // one bucket (15s) past the window every earlier nonce is gone
+    clock.setNow(clock.now().plusSeconds(16));
+    assertTrue(accepts(checker, "a"));
+    assertTrue(accepts(checker, "b"));
+    assertEquals(2, checker.getEvictionCount());
+    assertEquals(2, checker.getSize());
+  }
+
+  public void testOverflowReject() throws Exception {
+    InMemoryNonceChecker checker =
+        new InMemoryNonceChecker(clock, 60, 4, 64, OverflowPolicy.REJECT);
+    int accepted = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (accepts(checker, "nonce" + i)) {
+        accepted++;
+      }
+    }
+    assertTrue(accepted <= 64);
+    assertEquals(accepted, checker.getSize());
+    assertEquals(1000 - accepted, checker.getOverflowCount());
+    assertEquals(0, checker.getEvictionCount());
+  }
+
+  public void testOverflowEvictOldest() throws Exception {
+    InMemoryNonceChecker checker =
+        new InMemoryNonceChecker(clock, 60, 4, 64, OverflowPolicy.EVICT_OLDEST);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(accepts(checker, "nonce" + i));
+      clock.setNow(clock.now().plusMillis(10));
+    }
+    assertTrue(checker.getSize() <= 64);
+    assertEquals(1000 - checker.getSize(), checker.getEvictionCount());
+    assertFalse(accepts(checker, "nonce999"));
+  }
+
+  public void testConcurrentChecksAcceptEachNonceOnce() throws Exception {
+    final InMemoryNonceChecker checker = new InMemoryNonceChecker();
+    final AtomicInteger accepted = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 5000; i++) {
+              if (accepts(checker, "nonce" + i)) {
+                accepted.incrementAndGet();
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(5000, accepted.get());
+    assertEquals(5000, checker.getSize());
+    assertEquals(7 * 5000, checker.getRejectCount());
+  }
+}
@@ -16,10 +16,17 @@
  */
 package net.oauth.signatures;
 
+import net.oauth.jsontoken.FakeClock;
+import net.oauth.jsontoken.JsonToken;
 import net.oauth.jsontoken.JsonTokenTestBase;
 import net.oauth.jsontoken.crypto.RsaSHA256Signer;
 import net.oauth.jsontoken.crypto.Signer;
 
+import org.apache.commons.codec.binary.Base64;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
 public class SignedJsonAssertionBuilderTest extends JsonTokenTestBase {
 
   public void testSignature() throws Exception {
@@ -41,4 +48,18 @@ public class SignedJsonAssertionBuilderTest extends JsonTokenTestBase {
     assertEquals("nonce", compare.getNonce());
     assertEquals("http://www.example.com/api", compare.getAudience());
   }
+
+  public void testDefaultTimes() throws Exception {
+    FakeClock clock = new FakeClock();
+    clock.setNow(Instant.ofEpochSecond(1276669722L));
+    Signer signer = new RsaSHA256Signer("google.com", "key1", privateKey);
+
+    SignedJsonAssertionToken token = new SignedJsonAssertionToken(signer, clock);
+    token.setAudience("http://www.example.com/api");
+    String payload = new String(Base64.decodeBase64(token.serializeAndSign().split("\\.")[1]),
+        StandardCharsets.UTF_8);
+    assertTrue(payload, payload.contains("\"iat\":1276669722"));
+    assertTrue(payload, payload.contains(
+        "\"exp\":" + (1276669722L + JsonToken.DEFAULT_LIFETIME_IN_MINS * 60)));
+  }
 }
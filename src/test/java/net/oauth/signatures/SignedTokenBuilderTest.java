@@ -16,10 +16,16 @@
  */
 package net.oauth.signatures;
 
+import net.oauth.jsontoken.JsonTokenParser;
 import net.oauth.jsontoken.JsonTokenTestBase;
 import net.oauth.jsontoken.crypto.RsaSHA256Signer;
 import net.oauth.jsontoken.crypto.Signer;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.SignatureException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class SignedTokenBuilderTest extends JsonTokenTestBase {
 
   public void testSignature() throws Exception {
@@ -45,4 +51,68 @@ public class SignedTokenBuilderTest extends JsonTokenTestBase {
     assertEquals("token", compare.getOAuthToken());
     assertEquals("http://www.example.com/api", compare.getAudience());
   }
+
+  public void testEveryOverloadChecksRequiredFields() throws Exception {
+    Signer signer = new RsaSHA256Signer("google.com", "key1", privateKey);
+    SignedOAuthToken token = new SignedOAuthToken(signer);
+    token.setMethod("GET");
+    token.setOAuthToken("token");
+    token.setAudience("http://www.example.com/api");
+    // no nonce
+    try {
+      token.serializeAndSign();
+      fail("expected missing nonce");
+    } catch (NullPointerException expected) { }
+    try {
+      token.serializeAndSign(ByteBuffer.allocate(4096));
+      fail("expected missing nonce");
+    } catch (NullPointerException expected) { }
+    try {
+      token.serializeAndSign(new ByteArrayOutputStream());
+      fail("expected missing nonce");
+    } catch (NullPointerException expected) { }
+    StringBuilder out = new StringBuilder();
+    try {
+      token.serializeAndSign(out);
+      fail("expected missing nonce");
+    } catch (NullPointerException expected) { }
+    assertEquals(0, out.length());
+
+    token.setNonce("nonce");
+    token.serializeAndSign(out);
+    assertEquals(token.serializeAndSign(), out.toString());
+  }
+
+  public void testParserReusedPerUri() throws Exception {
+    Signer signer = new RsaSHA256Signer("google.com", "key1", privateKey);
+    SignedOAuthToken token = new SignedOAuthToken(signer);
+    token.setMethod("GET");
+    token.setNonce("nonce");
+    token.setOAuthToken("token");
+    token.setAudience("http://www.example.com/api");
+    String tokenString = token.serializeAndSign();
+
+    SignedOAuthTokenParser parser = new SignedOAuthTokenParser(locators, null);
+    for (int i = 0; i < 3; i++) {
+      assertEquals("GET", parser.parseToken(tokenString, "GET", "http://www.example.com/api").getMethod());
+      try {
+        parser.parseToken(tokenString, "GET", "http://www.example.com/other");
+        fail("expected wrong audience");
+      } catch (SignatureException expected) { }
+    }
+  }
+
+  public void testParserCacheIsBounded() throws Exception {
+    final AtomicInteger created = new AtomicInteger();
+    ParserCache cache = new ParserCache(uri -> {
+      created.incrementAndGet();
+      return new JsonTokenParser(locators, new SignedTokenAudienceChecker(uri));
+    });
+    assertSame(cache.get("http://a"), cache.get("http://a"));
+    assertEquals(1, created.get());
+    for (int i = 0; i < ParserCache.MAXIMUM_SIZE + 10; i++) {
+      cache.get("http://a/" + i);
+    }
+    assertEquals(ParserCache.MAXIMUM_SIZE, cache.size());
+  }
 }